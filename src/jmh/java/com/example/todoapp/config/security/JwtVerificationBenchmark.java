@@ -0,0 +1,61 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+// token handling of one authenticated request. the old path built key and parser for every call and verified the
+// token three times, extractUsername in the filter and extractUsername plus extractExpiration in validateToken.
+// allocations per request are reported by the gc profiler, see the jmh block in build.gradle
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "benchmark-secret-that-is-long-enough-for-hmac-sha-256";
+
+    private JwtTokenUtil jwtTokenUtil;
+    private AuthenticatedUser user;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jwtTokenUtil = new JwtTokenUtil(SECRET);
+        user = new AuthenticatedUser(1L, "benchmark-user", null, AuthorityUtils.createAuthorityList("ROLE_USER"));
+        token = jwtTokenUtil.generateToken(user);
+    }
+
+    @Benchmark
+    public boolean parsedThreeTimes() {
+        String username = legacyClaims(token).getSubject();
+        boolean sameUser = legacyClaims(token).getSubject().equals(username);
+        return sameUser && !legacyClaims(token).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public boolean verifiedOnce() {
+        return jwtTokenUtil.validateToken(jwtTokenUtil.verify(token), user);
+    }
+
+    // JwtTokenUtil.extractAllClaims as it was, with a new key and parser per call
+    private static Claims legacyClaims(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+// time of one password hash per algorithm and cost on the machine it runs on.
+// ./gradlew jmh measures the listed costs. main picks the lowest cost of each algorithm that takes at least
+// a target time, default 250 ms, and prints the settings for application.yml:
+// java -cp build/libs/todoapp-0.0.1-SNAPSHOT-jmh.jar com.example.todoapp.config.security.PasswordHashingCalibration 250
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class PasswordHashingCalibration {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    // bcrypt strength, argon2 memory in KiB and scrypt cpu cost, each benchmarked with the other two at their defaults
+    @Param({"bcrypt:10", "bcrypt:12", "argon2:16384", "argon2:65536", "scrypt:16384", "scrypt:65536"})
+    public String cost;
+
+    private PasswordEncoder encoder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] parts = cost.split(":");
+        encoder = encoderFor(parts[0]).apply(Integer.parseInt(parts[1]));
+    }
+
+    @Benchmark
+    public String hash() {
+        return encoder.encode(PASSWORD);
+    }
+
+    private static IntFunction<PasswordEncoder> encoderFor(String algorithm) {
+        return switch (algorithm) {
+            case "bcrypt" -> strength -> new PasswordEncoderFactory("bcrypt", strength, 16384, 2, 1, 65536, 8, 1).create();
+            case "argon2" -> memory -> new PasswordEncoderFactory("argon2", 10, memory, 2, 1, 65536, 8, 1).create();
+            case "scrypt" -> cpuCost -> new PasswordEncoderFactory("scrypt", 10, 16384, 2, 1, cpuCost, 8, 1).create();
+            default -> throw new IllegalArgumentException("Unknown password hashing algorithm " + algorithm + ".");
+        };
+    }
+
+    public static void main(String[] args) {
+        long targetMillis = args.length > 0 ? Long.parseLong(args[0]) : 250;
+        System.out.println("# costs taking at least " + targetMillis + " ms per hash on this machine");
+        System.out.println("todoapp.security.password-hashing.bcrypt.strength: " + calibrate("bcrypt", 4, 31, 1, targetMillis));
+        // memory and cpu cost are raised in powers of two
+        System.out.println("todoapp.security.password-hashing.argon2.memory: " + calibrate("argon2", 1 << 10, 1 << 22, 2, targetMillis));
+        System.out.println("todoapp.security.password-hashing.scrypt.cpu-cost: " + calibrate("scrypt", 1 << 10, 1 << 22, 2, targetMillis));
+    }
+
+    // raises the cost until the median of a few hashes reaches the target, bcrypt steps are additive, the others double
+    private static int calibrate(String algorithm, int from, int to, int factor, long targetMillis) {
+        int cost = from;
+        while (cost < to && medianMillis(encoderFor(algorithm).apply(cost)) < targetMillis) {
+            cost = factor == 1 ? cost + 1 : cost * factor;
+        }
+        return cost;
+    }
+
+    private static double medianMillis(PasswordEncoder encoder) {
+        encoder.encode(PASSWORD); // warm up
+        double[] millis = new double[5];
+        for (int i = 0; i < millis.length; i++) {
+            long start = System.nanoTime();
+            encoder.encode(PASSWORD);
+            millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(millis);
+        return millis[millis.length / 2];
+    }
+}
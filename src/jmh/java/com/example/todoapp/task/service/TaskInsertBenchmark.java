@@ -0,0 +1,81 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task.service;
+
+import com.example.todoapp.task.Task;
+import com.example.todoapp.task.repository.TaskRepository;
+import com.example.todoapp.task.repository.TaskRowMapper;
+import com.example.todoapp.task.repository.TaskSummaryRowMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+// single task creates from many request threads against a real database, with and without the insert batcher.
+// the pool is smaller than the number of threads, like in the running app, so direct inserts queue for connections.
+// run with ./gradlew jmh, docker has to be available for the database container
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(64)
+public class TaskInsertBenchmark {
+
+    @Param({"false", "true"})
+    public boolean batching;
+
+    @Param({"64"})
+    public int maxBatchSize;
+
+    @Param({"2"})
+    public int maxDelayMillis;
+
+    private PostgreSQLContainer<?> postgres;
+    private HikariDataSource dataSource;
+    private TaskInsertBatcher batcher;
+    private long userId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:latest");
+        postgres.start();
+
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(postgres.getJdbcUrl());
+        dataSource.setUsername(postgres.getUsername());
+        dataSource.setPassword(postgres.getPassword());
+        dataSource.setMaximumPoolSize(10);
+        new ResourceDatabasePopulator(new ClassPathResource("sql/schema.sql")).execute(dataSource);
+
+        JdbcClient client = JdbcClient.create(dataSource);
+        client.sql("INSERT INTO users (username, password) VALUES ('benchmark', 'unused')").update();
+        userId = client.sql("SELECT id FROM users WHERE username = 'benchmark'").query(Long.class).single();
+
+        // without a transaction manager every statement commits on its own, as the service calls it in the app
+        TaskRepository taskRepository = new TaskRepository(client, new TaskRowMapper(), new TaskSummaryRowMapper(), dataSource);
+        batcher = new TaskInsertBatcher(taskRepository, batching, maxBatchSize, Duration.ofMillis(maxDelayMillis), 4096, Duration.ofSeconds(10));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        batcher.close();
+        dataSource.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public Task create() {
+        return batcher.create(new Task(null, null, "benchmark task", "description", LocalDate.now().plusDays(1), 3, false, userId));
+    }
+}
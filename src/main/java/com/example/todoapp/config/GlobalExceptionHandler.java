@@ -5,13 +5,21 @@
 
 package com.example.todoapp.config;
 
+import com.example.todoapp.config.security.PasswordHashingBusyException;
+import com.example.todoapp.task.service.TaskValidationException;
+import com.example.todoapp.task.service.TaskVersionConflictException;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.TypeMismatchException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.validation.BindException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 
+import java.util.List;
+
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
@@ -25,11 +33,32 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(ex.getMessage());
     }
 
+    @ExceptionHandler(TaskValidationException.class)
+    public ResponseEntity<List<TaskValidationException.ItemError>> handleTaskValidation(TaskValidationException ex) {
+        return ResponseEntity.badRequest().body(ex.getErrors());
+    }
+
+    @ExceptionHandler(TaskVersionConflictException.class)
+    public ResponseEntity<String> handleTaskVersionConflict(TaskVersionConflictException ex) {
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(ex.getMessage());
+    }
+
+    @ExceptionHandler({BindException.class, TypeMismatchException.class})
+    public ResponseEntity<String> handleInvalidParameter(Exception ex) {
+        return ResponseEntity.badRequest().body("Invalid request parameter.");
+    }
+
     @ExceptionHandler(EntityNotFoundException.class)
     public ResponseEntity<String> handleEntityNotFound(EntityNotFoundException ex) {
         return ResponseEntity.badRequest().body(ex.getMessage());
     }
 
+    // the client may retry soon, the executor is only full for the length of a burst
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<String> handlePasswordHashingBusy(PasswordHashingBusyException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(ex.getMessage());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleGeneralException(Exception ex) {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An unexpected error occurred.");
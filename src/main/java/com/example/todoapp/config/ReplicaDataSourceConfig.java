@@ -0,0 +1,67 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// only active when replicas are configured, without them boot keeps its single pool
+@Configuration
+@ConditionalOnProperty(prefix = "spring.datasource.replica", name = "urls")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties,
+                                                             @Value("${spring.datasource.replica.urls}") List<String> urls,
+                                                             @Value("${spring.datasource.replica.username:${spring.datasource.username}}") String username,
+                                                             @Value("${spring.datasource.replica.password:${spring.datasource.password}}") String password,
+                                                             @Value("${spring.datasource.replica.max-lag:5s}") Duration maxLag) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(urls.get(i).trim());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas, maxLag);
+    }
+
+    // ahead of spring security, so the user lookup of the token filter is pinned as well
+    @Bean
+    public FilterRegistrationBean<ReplicaPinningFilter> replicaPinningFilter(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        FilterRegistrationBean<ReplicaPinningFilter> registration = new FilterRegistrationBean<>(new ReplicaPinningFilter(replicaRoutingDataSource));
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+        return registration;
+    }
+
+    // the transaction manager asks for a connection before it marks the transaction read only,
+    // the proxy holds the real checkout back until the first statement when the flag is known
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
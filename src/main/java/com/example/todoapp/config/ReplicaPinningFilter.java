@@ -0,0 +1,34 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+// keeps the read only transactions of one request on one replica, registered in ReplicaDataSourceConfig
+public class ReplicaPinningFilter extends OncePerRequestFilter {
+
+    private final ReplicaRoutingDataSource dataSource;
+
+    public ReplicaPinningFilter(ReplicaRoutingDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        dataSource.pin();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            dataSource.unpin();
+        }
+    }
+}
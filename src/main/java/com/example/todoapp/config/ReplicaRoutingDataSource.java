@@ -0,0 +1,148 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// read only transactions go to a replica, everything else and every lagging replica falls back to the primary.
+// within a pinned request every read only transaction uses the replica of the first one. replicas replay at their own pace,
+// so the task list version read by one transaction and the tasks read by the next could otherwise come from replicas
+// at different points, and a client would store an older list under a newer ETag. on one replica later reads never go back.
+// a pinned replica that falls behind hands over to the primary, which is ahead of every replica
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder {
+
+    static final String PRIMARY = "primary";
+
+    // zero while the replica has replayed everything it received, an idle primary would otherwise look like lag
+    private static final String LAG_SQL = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas = new HashMap<>();
+    private final List<String> replicaKeys = new ArrayList<>();
+    private final Set<String> healthy = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger next = new AtomicInteger();
+    private final ThreadLocal<Pin> pins = new ThreadLocal<>();
+    private final Duration maxLag;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources, Duration maxLag) {
+        this.primary = primary;
+        this.maxLag = maxLag;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            String key = "replica-" + i;
+            replicas.put(key, replicaDataSources.get(i));
+            replicaKeys.add(key);
+            targets.put(key, replicaDataSources.get(i));
+        }
+        healthy.addAll(replicaKeys);
+
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    // see ReplicaPinningFilter
+    public void pin() {
+        pins.set(new Pin());
+    }
+
+    public void unpin() {
+        pins.remove();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        Pin pin = pins.get();
+        if (pin == null) {
+            return nextReplica();
+        }
+        if (pin.key == null) {
+            pin.key = nextReplica();
+        } else if (!pin.key.equals(PRIMARY) && !healthy.contains(pin.key)) {
+            pin.key = PRIMARY;
+        }
+        return pin.key;
+    }
+
+    private String nextReplica() {
+        // round robin over the replicas that are currently in sync, a few skipped turns do not matter
+        for (int attempt = 0; attempt < replicaKeys.size(); attempt++) {
+            String key = replicaKeys.get(Math.floorMod(next.getAndIncrement(), replicaKeys.size()));
+            if (healthy.contains(key)) {
+                return key;
+            }
+        }
+        return PRIMARY;
+    }
+
+    @Scheduled(fixedDelayString = "${spring.datasource.replica.lag-check-interval:5s}")
+    public void refreshReplicaHealth() {
+        for (String key : replicaKeys) {
+            Duration lag;
+            try {
+                Double seconds = new JdbcTemplate(replicas.get(key)).queryForObject(LAG_SQL, Double.class);
+                lag = Duration.ofMillis(Math.round((seconds == null ? 0 : seconds) * 1000));
+            } catch (RuntimeException ex) {
+                // an unreachable replica is treated like one that is too far behind
+                lag = null;
+            }
+            updateHealth(key, lag);
+        }
+    }
+
+    void updateHealth(String key, Duration lag) {
+        if (lag != null && lag.compareTo(maxLag) <= 0) {
+            healthy.add(key);
+        } else {
+            healthy.remove(key);
+        }
+    }
+
+    // the pools are not beans of their own, so the context closes them through this one
+    public void close() throws Exception {
+        for (DataSource replica : replicas.values()) {
+            if (replica instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private static final class Pin {
+        private String key;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("datasource.replicas.healthy", healthy, Set::size)
+                .description("Replicas that are currently used for read only transactions")
+                .register(registry);
+    }
+}
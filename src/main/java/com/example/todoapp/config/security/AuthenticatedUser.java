@@ -0,0 +1,52 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+// principal of an authenticated request, carries the user id so request handling does not have to look it up by name.
+// built from the users table on login and from the claims of a verified token afterwards, then it has no password
+public class AuthenticatedUser implements UserDetails {
+    private final Long id;
+    private final String username;
+    private final String password;
+    private final List<GrantedAuthority> authorities;
+
+    public AuthenticatedUser(Long id, String username, String password, Collection<? extends GrantedAuthority> authorities) {
+        this.id = id;
+        this.username = username;
+        this.password = password;
+        this.authorities = List.copyOf(authorities);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    // the same user without the password hash, for keeping it around after authentication
+    public AuthenticatedUser withoutPassword() {
+        return password == null ? this : new AuthenticatedUser(id, username, null, authorities);
+    }
+}
@@ -7,29 +7,73 @@ package com.example.todoapp.config.security;
 
 import com.example.todoapp.user.User;
 import com.example.todoapp.user.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Optional;
+
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
+    // users of authenticated requests, without their password hash. off unless max-entries is set,
+    // a deleted account stays usable on other instances until its entry expires there
+    private final Cache<String, AuthenticatedUser> authenticatedUsers;
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    @Autowired
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    @Value("${todoapp.security.user-cache.max-entries:0}") long maxEntries,
+                                    @Value("${todoapp.security.user-cache.ttl:30s}") Duration ttl) {
         this.userRepository = userRepository;
+        this.authenticatedUsers = maxEntries > 0
+                ? Caffeine.newBuilder().maximumSize(maxEntries).expireAfterWrite(ttl).build()
+                : null;
     }
 
+    // used by the authentication manager on login, always read fresh from the primary since the password is checked against it
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-
-        return org.springframework.security.core.userdetails.User
-                .withUsername(user.getUsername())
-                .password(user.getPassword())
-                .roles("USER")
-                .build();
+        return toAuthenticatedUser(userRepository.findCredentials(username));
+    }
+
+    // the user behind a verified token, the password is not needed for that
+    public AuthenticatedUser loadAuthenticatedUser(String username) throws UsernameNotFoundException {
+        if (authenticatedUsers == null) {
+            return findUser(username).withoutPassword();
+        }
+        return authenticatedUsers.get(username, name -> findUser(name).withoutPassword());
+    }
+
+    // called by the authentication manager after a successful login when the stored hash is outdated,
+    // the password was just checked so it can be hashed again with the current algorithm and cost
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername(), user.getPassword(), newPassword);
+        evict(user.getUsername());
+        return toAuthenticatedUser(userRepository.findCredentials(user.getUsername()));
+    }
+
+    public void evict(String username) {
+        if (authenticatedUsers != null) {
+            authenticatedUsers.invalidate(username);
+        }
+    }
+
+    private AuthenticatedUser findUser(String username) {
+        return toAuthenticatedUser(userRepository.findByUsername(username));
+    }
+
+    private static AuthenticatedUser toAuthenticatedUser(Optional<User> found) {
+        User user = found.orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        return new AuthenticatedUser(user.getId(), user.getUsername(), user.getPassword(), AuthorityUtils.createAuthorityList("ROLE_USER"));
     }
 }
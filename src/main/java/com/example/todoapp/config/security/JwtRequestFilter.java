@@ -10,8 +10,11 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -23,29 +26,39 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
     private final JwtTokenUtil jwtTokenUtil;
     private final CustomUserDetailsService customUserDetailsService;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final boolean statelessPrincipal;
 
-    public JwtRequestFilter(JwtTokenUtil jwtTokenUtil, CustomUserDetailsService customUserDetailsService) {
+    @Autowired
+    public JwtRequestFilter(JwtTokenUtil jwtTokenUtil, CustomUserDetailsService customUserDetailsService,
+                            VerifiedTokenCache verifiedTokenCache,
+                            @Value("${todoapp.security.stateless-principal:false}") boolean statelessPrincipal) {
         this.jwtTokenUtil = jwtTokenUtil;
         this.customUserDetailsService = customUserDetailsService;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.statelessPrincipal = statelessPrincipal;
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
         String token = getJwtFromRequest(request);
 
-        if (StringUtils.hasText(token)) {
+        if (StringUtils.hasText(token) && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // the token is verified once, or not at all when it was seen before, everything below works on its claims
+            VerifiedToken verified = verifiedTokenCache.verify(token, jwtTokenUtil::verify);
 
-            String username = jwtTokenUtil.extractUsername(token);
-
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                var userDetails = customUserDetailsService.loadUserByUsername(username);
+            if (verified.getSubject() != null) {
+                // stateless, the signed claims are trusted without a query. a deleted account keeps working until its token expires
+                UserDetails userDetails = statelessPrincipal ? verified.toPrincipal() : null;
+                if (userDetails == null) {
+                    userDetails = customUserDetailsService.loadAuthenticatedUser(verified.getSubject());
+                }
 
-                if (jwtTokenUtil.validateToken(token, userDetails)) {
-                    Authentication authentication = jwtTokenUtil.getAuthentication(token, userDetails);
+                if (jwtTokenUtil.validateToken(verified, userDetails)) {
+                    Authentication authentication = jwtTokenUtil.getAuthentication(userDetails);
                     SecurityContextHolder.getContext().setAuthentication(authentication);
                 }
             }
-
         }
         chain.doFilter(request, response);
     }
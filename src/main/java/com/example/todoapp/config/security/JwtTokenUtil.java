@@ -6,70 +6,83 @@
 package com.example.todoapp.config.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import java.security.Key;
+import java.time.Instant;
 import java.util.Date;
-import java.util.function.Function;
+import java.util.List;
 
 @Component
 public class JwtTokenUtil {
 
-    @Value("${JWT_SECRET}")
-    private String SECRET_KEY;
     private final Long EXPIRATION_TIME_MS = 60L * 60 * 100 * 10; // expires in 10 hours. (number of hours is the last value)
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String ROLES_CLAIM = "roles";
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
-    }
+    // key and parser do not change, both are built once and the parser is safe to share between threads
+    private final Key signingKey;
+    private final JwtParser parser;
 
-    public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+    @Autowired
+    public JwtTokenUtil(@Value("${JWT_SECRET}") String secretKey) {
+        this.signingKey = Keys.hmacShaKeyFor(secretKey.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
 
-    public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    // checks signature and expiry and reads the claims, once per token. throws a JwtException for invalid tokens
+    public VerifiedToken verify(String token) {
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        List<?> roles = claims.get(ROLES_CLAIM, List.class);
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get(USER_ID_CLAIM, Long.class),
+                roles == null ? null : roles.stream().map(Object::toString).toList(),
+                toInstant(claims.getIssuedAt()),
+                toInstant(claims.getExpiration()));
     }
 
-    public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
-    }
-
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public String extractUsername(String token) {
+        return verify(token).getSubject();
     }
 
     public String generateToken(UserDetails userDetails) {
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder();
+        // id and roles let later requests authenticate from the token alone, see JwtRequestFilter
+        if (userDetails instanceof AuthenticatedUser user && user.getId() != null) {
+            builder.claim(USER_ID_CLAIM, user.getId());
+        }
+        return builder
+                .claim(ROLES_CLAIM, AuthorityUtils.authorityListToSet(userDetails.getAuthorities()))
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME_MS))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+    public boolean validateToken(VerifiedToken token, UserDetails userDetails) {
+        return token.getSubject().equals(userDetails.getUsername()) && !token.isExpired(Instant.now());
     }
 
-    public Authentication getAuthentication(String token, UserDetails userDetails) {
+    public Authentication getAuthentication(UserDetails userDetails) {
         return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
     }
+
+    private static Instant toInstant(Date date) {
+        return date == null ? null : date.toInstant();
+    }
 }
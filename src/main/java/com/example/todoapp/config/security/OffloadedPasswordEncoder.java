@@ -0,0 +1,51 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Optional;
+
+// hands the expensive calls of an encoder to the PasswordHashingExecutor, for every caller including the
+// authentication manager on login
+public class OffloadedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final PasswordHashingExecutor executor;
+
+    public OffloadedPasswordEncoder(PasswordEncoder delegate, PasswordHashingExecutor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return executor.call(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return executor.call(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    // checks a password and hashes it again on the same slot when the stored hash is outdated, a login then goes through
+    // the queue once and a correct password is never turned away for its rehash. empty when the password does not match,
+    // otherwise the hash to keep, which is the stored one while it is current
+    public Optional<String> matchesAndUpgrade(CharSequence rawPassword, String encodedPassword) {
+        return executor.call(() -> {
+            if (!delegate.matches(rawPassword, encodedPassword)) {
+                return Optional.empty();
+            }
+            return Optional.of(delegate.upgradeEncoding(encodedPassword) ? delegate.encode(rawPassword) : encodedPassword);
+        });
+    }
+
+    // only looks at the stored hash, cheap enough for the calling thread
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
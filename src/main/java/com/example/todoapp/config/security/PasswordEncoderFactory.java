@@ -0,0 +1,70 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.scrypt.SCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// builds the password encoder from configuration. new hashes are stored as {id}hash with the configured algorithm and cost,
+// hashes of every known algorithm still match. a hash of another algorithm or a lower cost is replaced on the next login,
+// see CustomUserDetailsService.updatePassword. hashes from before the prefix was added are plain bcrypt
+@Component
+public class PasswordEncoderFactory {
+
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+
+    private final String algorithm;
+    private final int bcryptStrength;
+    private final int argon2Memory;
+    private final int argon2Iterations;
+    private final int argon2Parallelism;
+    private final int scryptCpuCost;
+    private final int scryptMemoryCost;
+    private final int scryptParallelization;
+
+    @Autowired
+    public PasswordEncoderFactory(@Value("${todoapp.security.password-hashing.algorithm:bcrypt}") String algorithm,
+                                  @Value("${todoapp.security.password-hashing.bcrypt.strength:10}") int bcryptStrength,
+                                  @Value("${todoapp.security.password-hashing.argon2.memory:16384}") int argon2Memory,
+                                  @Value("${todoapp.security.password-hashing.argon2.iterations:2}") int argon2Iterations,
+                                  @Value("${todoapp.security.password-hashing.argon2.parallelism:1}") int argon2Parallelism,
+                                  @Value("${todoapp.security.password-hashing.scrypt.cpu-cost:65536}") int scryptCpuCost,
+                                  @Value("${todoapp.security.password-hashing.scrypt.memory-cost:8}") int scryptMemoryCost,
+                                  @Value("${todoapp.security.password-hashing.scrypt.parallelization:1}") int scryptParallelization) {
+        this.algorithm = algorithm;
+        this.bcryptStrength = bcryptStrength;
+        this.argon2Memory = argon2Memory;
+        this.argon2Iterations = argon2Iterations;
+        this.argon2Parallelism = argon2Parallelism;
+        this.scryptCpuCost = scryptCpuCost;
+        this.scryptMemoryCost = scryptMemoryCost;
+        this.scryptParallelization = scryptParallelization;
+    }
+
+    public PasswordEncoder create() {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        Map<String, PasswordEncoder> encoders = Map.of(
+                "bcrypt", bcrypt,
+                "argon2", new Argon2PasswordEncoder(SALT_LENGTH, HASH_LENGTH, argon2Parallelism, argon2Memory, argon2Iterations),
+                "scrypt", new SCryptPasswordEncoder(scryptCpuCost, scryptMemoryCost, scryptParallelization, HASH_LENGTH, SALT_LENGTH));
+        if (!encoders.containsKey(algorithm)) {
+            throw new IllegalArgumentException("Unknown password hashing algorithm " + algorithm + ". Use bcrypt, argon2 or scrypt.");
+        }
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(algorithm, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
+    }
+}
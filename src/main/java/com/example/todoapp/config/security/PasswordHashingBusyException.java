@@ -0,0 +1,12 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+public class PasswordHashingBusyException extends RuntimeException {
+    public PasswordHashingBusyException() {
+        super("Too many sign-ins at the moment, please try again shortly.");
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// runs password hashing on a few threads of its own. a login storm then uses at most these threads worth of cpu,
+// and once their queue is full further attempts fail right away instead of tying up request threads,
+// so the task endpoints keep their latency. a caller waits at most the timeout, for the queue and the hash together
+@Component
+public class PasswordHashingExecutor implements MeterBinder, AutoCloseable {
+
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+    private volatile Counter rejected;
+
+    @Autowired
+    public PasswordHashingExecutor(@Value("${todoapp.security.password-hashing.threads:0}") int threads,
+                                   @Value("${todoapp.security.password-hashing.queue-capacity:64}") int queueCapacity,
+                                   @Value("${todoapp.security.password-hashing.timeout:5s}") Duration timeout) {
+        this.timeout = timeout;
+        // 0 takes half of the cores, the rest stays free for serving requests
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "password-hashing-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // blocks the caller until the work is done, throws PasswordHashingBusyException without waiting when the queue is full
+    // and once the timeout is over, work that has not started by then is dropped
+    public <T> T call(Supplier<T> work) {
+        Future<T> result;
+        try {
+            result = executor.submit(work::get);
+        } catch (RejectedExecutionException ex) {
+            throw busy();
+        }
+        try {
+            return result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            result.cancel(true);
+            throw busy();
+        } catch (InterruptedException ex) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw busy();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private PasswordHashingBusyException busy() {
+        if (rejected != null) {
+            rejected.increment();
+        }
+        return new PasswordHashingBusyException();
+    }
+
+    int queued() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new ExecutorServiceMetrics(executor, "password.hashing", Tags.empty()).bindTo(registry);
+        rejected = Counter.builder("password.hashing.rejected")
+                .description("Password hashing requests turned away because the queue was full or they timed out")
+                .register(registry);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+// the login check of DaoAuthenticationProvider, but an outdated hash is replaced by the same hashing call that checked
+// the password. the stock provider hashes again after the check, a second trip through the PasswordHashingExecutor
+// that could answer a correct password with 503
+public class RehashingAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final OffloadedPasswordEncoder passwordEncoder;
+    private final UserDetailsPasswordService userDetailsPasswordService;
+
+    public RehashingAuthenticationProvider(UserDetailsService userDetailsService, UserDetailsPasswordService userDetailsPasswordService,
+                                           OffloadedPasswordEncoder passwordEncoder) {
+        // the password service stays out of the superclass, otherwise it would hash a second time on success
+        setUserDetailsService(userDetailsService);
+        setPasswordEncoder(passwordEncoder);
+        this.passwordEncoder = passwordEncoder;
+        this.userDetailsPasswordService = userDetailsPasswordService;
+    }
+
+    @Override
+    protected void additionalAuthenticationChecks(UserDetails userDetails, UsernamePasswordAuthenticationToken authentication) {
+        if (authentication.getCredentials() == null) {
+            throw badCredentials();
+        }
+        String hash = passwordEncoder.matchesAndUpgrade(authentication.getCredentials().toString(), userDetails.getPassword())
+                .orElseThrow(this::badCredentials);
+        if (!hash.equals(userDetails.getPassword())) {
+            userDetailsPasswordService.updatePassword(userDetails, hash);
+        }
+    }
+
+    private BadCredentialsException badCredentials() {
+        return new BadCredentialsException(messages.getMessage("AbstractUserDetailsAuthenticationProvider.badCredentials", "Bad credentials"));
+    }
+}
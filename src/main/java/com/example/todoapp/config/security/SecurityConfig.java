@@ -5,8 +5,12 @@
 
 package com.example.todoapp.config.security;
 
+import com.example.todoapp.idempotency.IdempotencyFilter;
+import com.example.todoapp.task.controller.TaskController;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.Customizer;
@@ -14,8 +18,6 @@ import org.springframework.security.config.annotation.authentication.builders.Au
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
@@ -33,9 +35,11 @@ public class SecurityConfig implements WebMvcConfigurer {
         this.jwtRequestFilter = jwtRequestFilter;
     }
 
+    // algorithm and cost come from configuration, see PasswordEncoderFactory.
+    // hashing runs on its own bounded executor, see PasswordHashingExecutor
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public OffloadedPasswordEncoder passwordEncoder(PasswordEncoderFactory passwordEncoderFactory, PasswordHashingExecutor passwordHashingExecutor) {
+        return new OffloadedPasswordEncoder(passwordEncoderFactory.create(), passwordHashingExecutor);
     }
 
     @Override
@@ -44,17 +48,19 @@ public class SecurityConfig implements WebMvcConfigurer {
         registry.addMapping("/**").allowedOrigins("http://localhost:8081", "http://localhost:5173")
                 .allowedMethods("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders(TaskController.NEXT_CURSOR_HEADER, HttpHeaders.ETAG, HttpHeaders.LOCATION, IdempotencyFilter.REPLAYED_HEADER)
                 .allowCredentials(true);
     }
 
 
+    // outdated hashes are replaced during the password check, see RehashingAuthenticationProvider
     @Bean
-    public AuthenticationManager authenticationManager (HttpSecurity http) throws Exception {
+    public AuthenticationManager authenticationManager (HttpSecurity http, OffloadedPasswordEncoder passwordEncoder) throws Exception {
         AuthenticationManagerBuilder authenticationManagerBuilder =
                 http.getSharedObject(AuthenticationManagerBuilder.class);
 
-        authenticationManagerBuilder.userDetailsService(customUserDetailsService)
-                .passwordEncoder(passwordEncoder());
+        authenticationManagerBuilder.authenticationProvider(
+                new RehashingAuthenticationProvider(customUserDetailsService, customUserDetailsService, passwordEncoder));
 
         return authenticationManagerBuilder.build();
     }
@@ -80,6 +86,8 @@ public class SecurityConfig implements WebMvcConfigurer {
                 .sessionManagement(
                         sessionManagement -> sessionManagement.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
+                                // streamed responses finish in an async dispatch, the request was already authorized before
+                                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                                 .requestMatchers(HttpMethod.GET, GET_AUTH_WHITELIST).permitAll()
                                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
                                 .requestMatchers(OPEN_ENDPOINTS).permitAll()
@@ -0,0 +1,63 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+
+// the claims of a token whose signature and expiry were checked, read once and immutable after that.
+// user id and roles are null for tokens issued before they were added to the claims
+public final class VerifiedToken {
+    private final String subject;
+    private final Long userId;
+    private final List<String> roles;
+    private final Instant issuedAt;
+    private final Instant expiresAt;
+
+    public VerifiedToken(String subject, Long userId, List<String> roles, Instant issuedAt, Instant expiresAt) {
+        this.subject = subject;
+        this.userId = userId;
+        this.roles = roles == null ? null : List.copyOf(roles);
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+
+    public Instant getIssuedAt() {
+        return issuedAt;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !now.isBefore(expiresAt);
+    }
+
+    // the principal as it was written into the token on login, null when the claims are missing
+    public AuthenticatedUser toPrincipal() {
+        if (userId == null || roles == null) {
+            return null;
+        }
+        List<GrantedAuthority> authorities = roles.stream().map(role -> (GrantedAuthority) new SimpleGrantedAuthority(role)).toList();
+        return new AuthenticatedUser(userId, subject, null, authorities);
+    }
+}
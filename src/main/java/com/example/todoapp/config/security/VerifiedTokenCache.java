@@ -0,0 +1,93 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.function.Function;
+
+// claims of tokens that were verified before, so a client reusing its token skips the signature check and the claim parsing.
+// keyed by a SHA-256 digest, the tokens themselves are not kept. every entry expires together with its token,
+// tokens that fail verification are never cached. off unless max-entries is set
+@Component
+public class VerifiedTokenCache implements MeterBinder {
+
+    private final Cache<String, VerifiedToken> tokens;
+
+    @Autowired
+    public VerifiedTokenCache(@Value("${todoapp.security.token-cache.max-entries:0}") long maxEntries) {
+        this.tokens = maxEntries > 0
+                ? Caffeine.newBuilder()
+                        .maximumSize(maxEntries)
+                        .expireAfter(new UntilTokenExpiry())
+                        .recordStats()
+                        .build()
+                : null;
+    }
+
+    public VerifiedToken verify(String token, Function<String, VerifiedToken> verifier) {
+        if (tokens == null) {
+            return verifier.apply(token);
+        }
+        return tokens.get(digest(token), key -> verifier.apply(token));
+    }
+
+    public CacheStats stats() {
+        return tokens == null ? CacheStats.empty() : tokens.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (tokens != null) {
+            CaffeineCacheMetrics.monitor(registry, tokens, "jwt.verified");
+        }
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available.", ex);
+        }
+    }
+
+    private static class UntilTokenExpiry implements Expiry<String, VerifiedToken> {
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+            // a token without expiry is not kept, it would otherwise stay valid here forever
+            if (token.getExpiresAt() == null) {
+                return 0;
+            }
+            return Math.max(0, Duration.between(Instant.now(), token.getExpiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.idempotency;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// hashes the request body while the handler streams it, an import is never held in memory just for its fingerprint
+class BodyDigestingRequest extends HttpServletRequestWrapper {
+
+    private final MessageDigest digest = sha256();
+    private ServletInputStream inputStream;
+    private BufferedReader reader;
+
+    BodyDigestingRequest(HttpServletRequest request) {
+        super(request);
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (inputStream == null) {
+            inputStream = new DigestingInputStream(super.getInputStream(), digest);
+        }
+        return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (reader == null) {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+            reader = new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+        return reader;
+    }
+
+    // reads whatever the handler left of the body, then returns the hash of all of it
+    String finish() throws IOException {
+        drain(getInputStream());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // the hash of a body that is not handed to a handler, a retry that is answered from the stored response
+    static String hash(InputStream body) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+            // the digest sees the bytes as they are read
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available.", ex);
+        }
+    }
+
+    private static class DigestingInputStream extends ServletInputStream {
+        private final ServletInputStream delegate;
+        private final MessageDigest digest;
+
+        DigestingInputStream(ServletInputStream delegate, MessageDigest digest) {
+            this.delegate = delegate;
+            this.digest = digest;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b != -1) {
+                digest.update((byte) b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = delegate.read(buffer, offset, length);
+            if (read > 0) {
+                digest.update(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+    }
+}
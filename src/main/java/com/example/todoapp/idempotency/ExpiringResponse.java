@@ -0,0 +1,28 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.idempotency;
+
+import java.time.Duration;
+
+// a stored response together with the moment its row expires, on the System.nanoTime clock the cache runs on.
+// the remaining time comes from the database, so the cache never keeps a response longer than the table
+public class ExpiringResponse {
+    private final StoredResponse response;
+    private final long expiresAt;
+
+    public ExpiringResponse(StoredResponse response, Duration expiresIn) {
+        this.response = response;
+        this.expiresAt = System.nanoTime() + expiresIn.toNanos();
+    }
+
+    public StoredResponse getResponse() {
+        return response;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
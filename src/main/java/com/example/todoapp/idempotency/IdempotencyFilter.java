@@ -0,0 +1,156 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.idempotency;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+// runs a write sent with an Idempotency-Key at most once, a retry with the same key gets the stored response instead.
+// registered behind spring security in IdempotencyConfig, the key belongs to the authenticated user.
+// a retry has to repeat the request, method, uri and a hash of the body, otherwise the key is rejected with 422
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyFilter.class);
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Set<String> SAFE_METHODS = Set.of(HttpMethod.GET.name(), HttpMethod.HEAD.name(), HttpMethod.OPTIONS.name());
+
+    private final IdempotencyStore idempotencyStore;
+
+    public IdempotencyFilter(IdempotencyStore idempotencyStore) {
+        this.idempotencyStore = idempotencyStore;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader(IDEMPOTENCY_KEY_HEADER) == null || SAFE_METHODS.contains(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER).strip();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            writeMessage(response, HttpStatus.BAD_REQUEST, "Idempotency-Key must have between 1 and 255 characters.");
+            return;
+        }
+        String username = authentication.getName();
+        String requestLine = request.getMethod() + " " + request.getRequestURI();
+
+        while (true) {
+            Optional<StoredResponse> stored = idempotencyStore.find(username, key);
+            if (stored.isPresent()) {
+                replay(stored.get(), request, requestLine, response);
+                return;
+            }
+
+            CompletableFuture<Void> running = new CompletableFuture<>();
+            CompletableFuture<Void> other = idempotencyStore.enter(username, key, running);
+            if (other != null) {
+                // a retry that overtook the first attempt on this instance waits for it, then looks again
+                other.join();
+                continue;
+            }
+            try {
+                if (idempotencyStore.claim(username, key, requestLine)) {
+                    execute(request, response, chain, username, key, requestLine);
+                } else {
+                    // the key was completed in between or is held by a request on another instance
+                    Optional<StoredResponse> completed = idempotencyStore.find(username, key);
+                    if (completed.isPresent()) {
+                        replay(completed.get(), request, requestLine, response);
+                    } else {
+                        writeMessage(response, HttpStatus.CONFLICT, "A request with this Idempotency-Key is still in progress.");
+                    }
+                }
+                return;
+            } finally {
+                idempotencyStore.leave(username, key, running);
+            }
+        }
+    }
+
+    private void execute(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
+                         String username, String key, String requestLine) throws ServletException, IOException {
+        BodyDigestingRequest digesting = new BodyDigestingRequest(request);
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        String fingerprint;
+        try {
+            chain.doFilter(digesting, wrapper);
+            fingerprint = requestLine + " " + digesting.finish();
+        } catch (ServletException | IOException | RuntimeException ex) {
+            idempotencyStore.release(username, key);
+            throw ex;
+        }
+
+        // client errors are answers as well, only server errors may turn out differently on a retry
+        if (wrapper.getStatus() < HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+            try {
+                idempotencyStore.complete(username, key, new StoredResponse(fingerprint, wrapper.getStatus(), wrapper.getContentType(),
+                        wrapper.getHeader(HttpHeaders.LOCATION), wrapper.getHeader(HttpHeaders.ETAG), wrapper.getContentAsByteArray()));
+            } catch (RuntimeException ex) {
+                // the write is done, so the client still gets its answer. the key stays claimed without a response,
+                // retries get 409 until it counts as abandoned, a retry after that runs the request a second time
+                log.warn("Could not store the response for Idempotency-Key {} of {}.", key, username, ex);
+            }
+        } else {
+            idempotencyStore.release(username, key);
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private static void replay(StoredResponse stored, HttpServletRequest request, String requestLine, HttpServletResponse response) throws IOException {
+        if (!stored.getRequest().equals(requestLine + " " + BodyDigestingRequest.hash(request.getInputStream()))) {
+            writeMessage(response, HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency-Key was already used for another request.");
+            return;
+        }
+        response.setStatus(stored.getStatus());
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        if (stored.getLocation() != null) {
+            response.setHeader(HttpHeaders.LOCATION, stored.getLocation());
+        }
+        if (stored.getETag() != null) {
+            response.setHeader(HttpHeaders.ETAG, stored.getETag());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.getBody().length);
+        response.getOutputStream().write(stored.getBody());
+    }
+
+    private static void writeMessage(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(message);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.idempotency;
+
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Optional;
+
+// ages are compared against the database clock, so all instances agree on when a key expired
+@Repository
+@Transactional
+public class IdempotencyRepository {
+    private final JdbcClient client;
+
+    public IdempotencyRepository(JdbcClient client) {
+        this.client = client;
+    }
+
+    // takes the key for one request, either it is new, its response expired, or the request holding it was abandoned
+    public boolean claim(String username, String key, String request, Duration ttl, Duration abandonedAfter) {
+        String sql = "INSERT INTO idempotency_keys (username, idempotency_key, request) VALUES (?, ?, ?) "
+                + "ON CONFLICT (username, idempotency_key) DO UPDATE SET request = EXCLUDED.request, status = NULL, "
+                + "content_type = NULL, location = NULL, etag = NULL, body = NULL, created_at = now() "
+                + "WHERE idempotency_keys.created_at < now() - make_interval(secs => ?) "
+                + "OR (idempotency_keys.status IS NULL AND idempotency_keys.created_at < now() - make_interval(secs => ?))";
+        return client.sql(sql).params(username, key, request, seconds(ttl), seconds(abandonedAfter)).update() == 1;
+    }
+
+    // the time left comes with the response, see ExpiringResponse
+    public Optional<ExpiringResponse> findCompleted(String username, String key, Duration ttl) {
+        String sql = "SELECT request, status, content_type, location, etag, body, "
+                + "EXTRACT(EPOCH FROM created_at + make_interval(secs => ?) - now()) AS expires_in FROM idempotency_keys "
+                + "WHERE username = ? AND idempotency_key = ? AND status IS NOT NULL AND created_at >= now() - make_interval(secs => ?)";
+        return client.sql(sql).params(seconds(ttl), username, key, seconds(ttl))
+                .query((rs, rowNum) -> new ExpiringResponse(new StoredResponse(rs.getString("request"), rs.getInt("status"),
+                        rs.getString("content_type"), rs.getString("location"), rs.getString("etag"), rs.getBytes("body")),
+                        duration(rs.getDouble("expires_in"))))
+                .optional();
+    }
+
+    // returns the time left until the key expires, empty if the row is gone
+    public Optional<Duration> complete(String username, String key, StoredResponse response, Duration ttl) {
+        String sql = "UPDATE idempotency_keys SET status = ?, content_type = ?, location = ?, etag = ?, body = ? "
+                + "WHERE username = ? AND idempotency_key = ? "
+                + "RETURNING EXTRACT(EPOCH FROM created_at + make_interval(secs => ?) - now())";
+        return client.sql(sql).params(response.getStatus(), response.getContentType(), response.getLocation(), response.getETag(),
+                response.getBody(), username, key, seconds(ttl)).query(Double.class).optional().map(IdempotencyRepository::duration);
+    }
+
+    // moves the abandoned-after deadline of a key whose request is still running, a stored response keeps its age
+    public void touch(String username, String key) {
+        String sql = "UPDATE idempotency_keys SET created_at = now() WHERE username = ? AND idempotency_key = ? AND status IS NULL";
+        client.sql(sql).params(username, key).update();
+    }
+
+    // gives the key back after a request failed, so a retry runs it again
+    public void release(String username, String key) {
+        String sql = "DELETE FROM idempotency_keys WHERE username = ? AND idempotency_key = ? AND status IS NULL";
+        client.sql(sql).params(username, key).update();
+    }
+
+    public int deleteExpired(Duration ttl) {
+        String sql = "DELETE FROM idempotency_keys WHERE created_at < now() - make_interval(secs => ?)";
+        return client.sql(sql).params(seconds(ttl)).update();
+    }
+
+    private static double seconds(Duration duration) {
+        return duration.toMillis() / 1000.0;
+    }
+
+    private static Duration duration(double seconds) {
+        return Duration.ofMillis(Math.max(0, (long) (seconds * 1000)));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// responses of requests sent with an Idempotency-Key. the table is the source of truth and is shared by all instances,
+// recent responses are also kept in a bounded cache so a quick retry is answered without a query.
+// a cached response expires together with its row, not a full ttl after it was cached.
+// keys are scoped to the user, two accounts can use the same key without seeing each others responses.
+// a key claimed here is kept alive by a heartbeat while its request runs, only a crashed instance leaves it to expire,
+// so an import or bulk write that takes longer than abandoned-after is not run a second time by a retry
+@Component
+public class IdempotencyStore {
+
+    private final IdempotencyRepository idempotencyRepository;
+    private final Duration ttl;
+    private final Duration abandonedAfter;
+    private final Cache<List<String>, ExpiringResponse> responses;
+    private final ConcurrentMap<List<String>, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private final Set<List<String>> claimed = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public IdempotencyStore(IdempotencyRepository idempotencyRepository,
+                            @Value("${todoapp.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${todoapp.idempotency.abandoned-after:1m}") Duration abandonedAfter,
+                            @Value("${todoapp.idempotency.max-entries:10000}") long maxEntries) {
+        this.idempotencyRepository = idempotencyRepository;
+        this.ttl = ttl;
+        this.abandonedAfter = abandonedAfter;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<List<String>, ExpiringResponse>() {
+                    @Override
+                    public long expireAfterCreate(List<String> key, ExpiringResponse value, long currentTime) {
+                        return Math.max(0, value.getExpiresAt() - currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(List<String> key, ExpiringResponse value, long currentTime, long currentDuration) {
+                        return Math.max(0, value.getExpiresAt() - currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(List<String> key, ExpiringResponse value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    public Optional<StoredResponse> find(String username, String key) {
+        List<String> cacheKey = List.of(username, key);
+        ExpiringResponse cached = responses.getIfPresent(cacheKey);
+        if (cached != null) {
+            return Optional.of(cached.getResponse());
+        }
+        Optional<ExpiringResponse> stored = idempotencyRepository.findCompleted(username, key, ttl);
+        stored.ifPresent(response -> responses.put(cacheKey, response));
+        return stored.map(ExpiringResponse::getResponse);
+    }
+
+    // registers a request as running on this instance, returns the one already running with the same key if there is one
+    public CompletableFuture<Void> enter(String username, String key, CompletableFuture<Void> running) {
+        return inFlight.putIfAbsent(List.of(username, key), running);
+    }
+
+    public void leave(String username, String key, CompletableFuture<Void> running) {
+        inFlight.remove(List.of(username, key), running);
+        running.complete(null);
+    }
+
+    // other instances share the table, a key held by a request running elsewhere can not be claimed
+    public boolean claim(String username, String key, String request) {
+        if (!idempotencyRepository.claim(username, key, request, ttl, abandonedAfter)) {
+            return false;
+        }
+        claimed.add(List.of(username, key));
+        return true;
+    }
+
+    // the heartbeat stops even if the response can not be stored, the key is then left to be abandoned
+    public void complete(String username, String key, StoredResponse response) {
+        try {
+            idempotencyRepository.complete(username, key, response, ttl)
+                    .ifPresent(expiresIn -> responses.put(List.of(username, key), new ExpiringResponse(response, expiresIn)));
+        } finally {
+            claimed.remove(List.of(username, key));
+        }
+    }
+
+    public void release(String username, String key) {
+        try {
+            idempotencyRepository.release(username, key);
+        } finally {
+            claimed.remove(List.of(username, key));
+        }
+    }
+
+    // has to run well within abandoned-after, see application.yml
+    @Scheduled(fixedDelayString = "${todoapp.idempotency.heartbeat-interval:15s}")
+    public void heartbeat() {
+        for (List<String> key : claimed) {
+            idempotencyRepository.touch(key.get(0), key.get(1));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${todoapp.idempotency.purge-interval:1h}")
+    public void purgeExpired() {
+        idempotencyRepository.deleteExpired(ttl);
+    }
+}
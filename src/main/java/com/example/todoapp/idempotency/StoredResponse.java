@@ -0,0 +1,49 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.idempotency;
+
+// the part of a response that is replayed for a retry, together with the request it answered
+public class StoredResponse {
+    private final String request;
+    private final int status;
+    private final String contentType;
+    private final String location;
+    private final String eTag;
+    private final byte[] body;
+
+    public StoredResponse(String request, int status, String contentType, String location, String eTag, byte[] body) {
+        this.request = request;
+        this.status = status;
+        this.contentType = contentType;
+        this.location = location;
+        this.eTag = eTag;
+        this.body = body;
+    }
+
+    public String getRequest() {
+        return request;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+}
@@ -25,6 +25,7 @@ public class Task {
     private Integer priority;
     private Boolean completed;
     private Long userId;
+    private Long version;
 
     public Task() {
     }
@@ -40,6 +41,11 @@ public class Task {
         this.userId = userId;
     }
 
+    public Task(Task task) {
+        this(task.id, task.publicId, task.name, task.description, task.deadline, task.priority, task.completed, task.userId);
+        this.version = task.version;
+    }
+
     public UUID getPublicId() {
         return publicId;
     }
@@ -103,4 +109,12 @@ public class Task {
     public void setUserId(Long userId) {
         this.userId = userId;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
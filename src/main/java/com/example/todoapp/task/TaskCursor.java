@@ -0,0 +1,58 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.util.Base64;
+
+// position of the last task of a page in the (sort key, id) ordering, opaque to clients
+public class TaskCursor {
+    private static final String SEPARATOR = ":";
+
+    private final TaskSort sort;
+    private final Object key;
+    private final long id;
+
+    public TaskCursor(TaskSort sort, Object key, long id) {
+        this.sort = sort;
+        this.key = key;
+        this.id = id;
+    }
+
+    public static TaskCursor after(Task task, TaskSort sort) {
+        return new TaskCursor(sort, sort.keyOf(task), task.getId());
+    }
+
+    public static TaskCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // the key goes last because task names may contain the separator
+            String[] parts = raw.split(SEPARATOR, 3);
+            TaskSort sort = TaskSort.valueOf(parts[0]);
+            return new TaskCursor(sort, sort.parseKey(parts[2]), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException | DateTimeException | IndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
+    }
+
+    public String encode() {
+        String raw = sort.name() + SEPARATOR + id + SEPARATOR + (key == null ? "" : key);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public TaskSort getSort() {
+        return sort;
+    }
+
+    public Object getKey() {
+        return key;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task;
+
+import java.util.Locale;
+
+// formats of the task import and export, CSV with a header line or one JSON object per line
+public enum TaskDataFormat {
+    CSV,
+    JSON;
+
+    public static TaskDataFormat fromParameter(String value) {
+        if (value == null) {
+            return CSV;
+        }
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown format. Use csv or json.");
+        }
+    }
+}
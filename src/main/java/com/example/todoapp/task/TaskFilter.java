@@ -0,0 +1,75 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+public class TaskFilter {
+    private Boolean completed;
+    private Integer minPriority;
+    private Integer maxPriority;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate dueFrom;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate dueTo;
+
+    private TaskSort sort;
+
+    public boolean isEmpty() {
+        return completed == null && minPriority == null && maxPriority == null && dueFrom == null && dueTo == null && sort == null;
+    }
+
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(Boolean completed) {
+        this.completed = completed;
+    }
+
+    public Integer getMinPriority() {
+        return minPriority;
+    }
+
+    public void setMinPriority(Integer minPriority) {
+        this.minPriority = minPriority;
+    }
+
+    public Integer getMaxPriority() {
+        return maxPriority;
+    }
+
+    public void setMaxPriority(Integer maxPriority) {
+        this.maxPriority = maxPriority;
+    }
+
+    public LocalDate getDueFrom() {
+        return dueFrom;
+    }
+
+    public void setDueFrom(LocalDate dueFrom) {
+        this.dueFrom = dueFrom;
+    }
+
+    public LocalDate getDueTo() {
+        return dueTo;
+    }
+
+    public void setDueTo(LocalDate dueTo) {
+        this.dueTo = dueTo;
+    }
+
+    public TaskSort getSort() {
+        return sort == null ? TaskSort.DEADLINE : sort;
+    }
+
+    public void setSort(TaskSort sort) {
+        this.sort = sort;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task;
+
+import java.util.List;
+
+public class TaskPage {
+    private final List<Task> tasks;
+    private final TaskCursor next;
+
+    public TaskPage(List<Task> tasks, TaskCursor next) {
+        this.tasks = tasks;
+        this.next = next;
+    }
+
+    // rows are queried with limit + 1, the extra row only signals that a next page exists
+    public static TaskPage of(List<Task> rows, int limit, TaskSort sort) {
+        if (rows.size() <= limit) {
+            return new TaskPage(rows, null);
+        }
+        List<Task> tasks = rows.subList(0, limit);
+        return new TaskPage(tasks, TaskCursor.after(tasks.getLast(), sort));
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    public TaskCursor getNext() {
+        return next;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// the columns a merge patch touches, keyed by column name. absent columns are left as they are,
+// a column set to null is cleared
+public class TaskPatch {
+    public static final String NAME = "name";
+    public static final String DESCRIPTION = "description";
+    public static final String DEADLINE = "deadline";
+    public static final String PRIORITY = "priority";
+    public static final String COMPLETED = "completed";
+
+    private final Map<String, Object> changes = new LinkedHashMap<>();
+
+    public void setName(String name) {
+        changes.put(NAME, name);
+    }
+
+    public void setDescription(String description) {
+        changes.put(DESCRIPTION, description);
+    }
+
+    public void setDeadline(LocalDate deadline) {
+        changes.put(DEADLINE, deadline);
+    }
+
+    public void setPriority(Integer priority) {
+        changes.put(PRIORITY, priority);
+    }
+
+    public void setCompleted(Boolean completed) {
+        changes.put(COMPLETED, completed);
+    }
+
+    public boolean isSet(String column) {
+        return changes.containsKey(column);
+    }
+
+    public String getName() {
+        return (String) changes.get(NAME);
+    }
+
+    public LocalDate getDeadline() {
+        return (LocalDate) changes.get(DEADLINE);
+    }
+
+    public Integer getPriority() {
+        return (Integer) changes.get(PRIORITY);
+    }
+
+    // the task as it is after the patch, the given one is left as it is
+    public Task applyTo(Task task) {
+        Task patched = new Task(task);
+        if (isSet(NAME)) {
+            patched.setName(getName());
+        }
+        if (isSet(DESCRIPTION)) {
+            patched.setDescription((String) changes.get(DESCRIPTION));
+        }
+        if (isSet(DEADLINE)) {
+            patched.setDeadline(getDeadline());
+        }
+        if (isSet(PRIORITY)) {
+            patched.setPriority(getPriority());
+        }
+        if (isSet(COMPLETED)) {
+            patched.setCompleted((Boolean) changes.get(COMPLETED));
+        }
+        return patched;
+    }
+
+    public Map<String, Object> getChanges() {
+        return Collections.unmodifiableMap(changes);
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+}
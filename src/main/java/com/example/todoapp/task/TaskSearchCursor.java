@@ -0,0 +1,46 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// position of the last hit of a search page in the (rank, id) ordering, opaque to clients
+public class TaskSearchCursor {
+    private static final String SEPARATOR = ":";
+
+    private final float rank;
+    private final long id;
+
+    public TaskSearchCursor(float rank, long id) {
+        this.rank = rank;
+        this.id = id;
+    }
+
+    public static TaskSearchCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(SEPARATOR, 2);
+            return new TaskSearchCursor(Float.parseFloat(parts[0]), Long.parseLong(parts[1]));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
+    }
+
+    // Float.toString round trips exactly, so the next page continues right after the same row
+    public String encode() {
+        String raw = Float.toString(rank) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public float getRank() {
+        return rank;
+    }
+
+    public long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task;
+
+import java.util.List;
+import java.util.Map;
+
+public class TaskSearchPage {
+    private final List<Task> tasks;
+    private final TaskSearchCursor next;
+
+    public TaskSearchPage(List<Task> tasks, TaskSearchCursor next) {
+        this.tasks = tasks;
+        this.next = next;
+    }
+
+    // hits are queried with limit + 1 together with their rank, the extra hit only signals that a next page exists
+    public static TaskSearchPage of(List<Map.Entry<Task, Float>> hits, int limit) {
+        List<Task> tasks = hits.stream().limit(limit).map(Map.Entry::getKey).toList();
+        if (hits.size() <= limit) {
+            return new TaskSearchPage(tasks, null);
+        }
+        Map.Entry<Task, Float> last = hits.get(limit - 1);
+        return new TaskSearchPage(tasks, new TaskSearchCursor(last.getValue(), last.getKey().getId()));
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    public TaskSearchCursor getNext() {
+        return next;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task;
+
+import java.util.List;
+
+// the tasks of one user as they were at one task list version, read together in a single transaction
+public class TaskSnapshot {
+    private final TaskVersion version;
+    private final List<Task> tasks;
+
+    public TaskSnapshot(TaskVersion version, List<Task> tasks) {
+        this.version = version;
+        this.tasks = tasks;
+    }
+
+    // every task copied, for handing out a snapshot that is kept somewhere else as well
+    public TaskSnapshot copy() {
+        return new TaskSnapshot(version, tasks.stream().map(Task::new).toList());
+    }
+
+    public TaskVersion getVersion() {
+        return version;
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+}
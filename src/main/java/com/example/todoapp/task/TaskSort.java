@@ -0,0 +1,63 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task;
+
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.function.Function;
+
+public enum TaskSort {
+    DEADLINE("deadline", true, false, Task::getDeadline, LocalDate::parse),
+    // tasks without a priority sort last, their cursor key is empty
+    PRIORITY("priority", true, true, Task::getPriority, key -> key.isEmpty() ? null : Integer.valueOf(key)),
+    NAME("name", false, false, Task::getName, key -> key);
+
+    // only these column names are ever concatenated into sql, values always go through parameters
+    private final String column;
+    private final boolean descending;
+    private final boolean nullable;
+    private final Function<Task, Object> keyExtractor;
+    private final Function<String, Object> keyParser;
+
+    TaskSort(String column, boolean descending, boolean nullable, Function<Task, Object> keyExtractor, Function<String, Object> keyParser) {
+        this.column = column;
+        this.descending = descending;
+        this.nullable = nullable;
+        this.keyExtractor = keyExtractor;
+        this.keyParser = keyParser;
+    }
+
+    public static TaskSort fromParameter(String value) {
+        if (value == null) {
+            return DEADLINE;
+        }
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown sort key. Use deadline, priority or name.");
+        }
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public boolean isNullable() {
+        return nullable;
+    }
+
+    public Object keyOf(Task task) {
+        return keyExtractor.apply(task);
+    }
+
+    public Object parseKey(String key) {
+        return keyParser.apply(key);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+// task counts of one user, summed up from the few counter rows kept per priority and completion
+public class TaskStats {
+    private long total;
+    private long completed;
+    private long overdue;
+    private final Map<Integer, Long> byPriority = new TreeMap<>();
+
+    public TaskStats() {
+        for (int priority = 1; priority <= 5; priority++) {
+            byPriority.put(priority, 0L);
+        }
+    }
+
+    // priority 0 stands for tasks without a priority, they only count towards the totals
+    public void add(int priority, boolean completed, long count) {
+        total += count;
+        if (completed) {
+            this.completed += count;
+        }
+        if (byPriority.containsKey(priority)) {
+            byPriority.merge(priority, count, Long::sum);
+        }
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+
+    public long getOverdue() {
+        return overdue;
+    }
+
+    public void setOverdue(long overdue) {
+        this.overdue = overdue;
+    }
+
+    public Map<Integer, Long> getByPriority() {
+        return byPriority;
+    }
+}
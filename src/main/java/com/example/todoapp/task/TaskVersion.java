@@ -0,0 +1,30 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task;
+
+// change counter of all tasks owned by one user, bumped by every write to them
+public class TaskVersion {
+    private final long userId;
+    private final long version;
+
+    public TaskVersion(long userId, long version) {
+        this.userId = userId;
+        this.version = version;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // the user id is part of the tag so a cached list of one account never validates for another
+    public String toETag() {
+        return "\\"" + userId + "-" + version + "\\"";
+    }
+}
@@ -0,0 +1,25 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task;
+
+import java.util.Locale;
+
+// how much of a task a listing loads, SUMMARY leaves out the unbounded description
+public enum TaskView {
+    FULL,
+    SUMMARY;
+
+    public static TaskView fromParameter(String value) {
+        if (value == null) {
+            return FULL;
+        }
+        try {
+            return valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Unknown view. Use full or summary.");
+        }
+    }
+}
@@ -6,56 +6,235 @@
 package com.example.todoapp.task.controller;
 
 import com.example.todoapp.task.Task;
+import com.example.todoapp.task.TaskCursor;
+import com.example.todoapp.task.TaskDataFormat;
+import com.example.todoapp.task.TaskFilter;
+import com.example.todoapp.task.TaskPage;
+import com.example.todoapp.task.TaskPatch;
+import com.example.todoapp.task.TaskSearchCursor;
+import com.example.todoapp.task.TaskSearchPage;
+import com.example.todoapp.task.TaskSnapshot;
+import com.example.todoapp.task.TaskStats;
+import com.example.todoapp.task.TaskVersion;
+import com.example.todoapp.task.TaskView;
 import com.example.todoapp.task.service.TaskService;
+import com.example.todoapp.task.service.TaskVersionConflictException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/tasks")
 public class TaskController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+    public static final String TEXT_CSV_VALUE = "text/csv";
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType(TEXT_CSV_VALUE);
+    private static final int DEFAULT_PAGE_SIZE = 50;
+
     private final TaskService taskService;
     private final TaskMapper taskMapper;
+    private final ObjectWriter ndjsonWriter;
 
     @Autowired
-    public TaskController(TaskService taskService, TaskMapper taskMapper) {
+    public TaskController(TaskService taskService, TaskMapper taskMapper, ObjectMapper objectMapper) {
         this.taskService = taskService;
         this.taskMapper = taskMapper;
+        // every line is written separately, the response stream has to stay open in between
+        this.ndjsonWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
+    // the created task is returned as is, the owner is the caller so no name lookup is needed
     @PostMapping
-    public ResponseEntity<Void> createTask(@RequestBody TaskDTO taskDTO) {
+    public ResponseEntity<TaskDTO> createTask(@RequestBody TaskDTO taskDTO) {
         Task task = taskMapper.fromDTO(taskDTO);
 
-        taskService.createTask(task);
-        return ResponseEntity.status(HttpStatus.CREATED).build();
+        Task created = taskService.createTask(task);
+        URI location = ServletUriComponentsBuilder.fromCurrentRequestUri()
+                .path("/public/{public_id}")
+                .buildAndExpand(created.getPublicId())
+                .toUri();
+        return ResponseEntity.created(location)
+                .eTag(toETag(created.getVersion()))
+                .body(taskMapper.toDTO(created, taskMapper.getUserName()));
+    }
+
+    @PostMapping("/bulk")
+    public ResponseEntity<List<UUID>> createTasks(@RequestBody List<TaskDTO> taskDTOs) {
+        Long userId = taskMapper.getUserId();
+        List<Task> tasks = taskDTOs.stream().map(taskDTO -> taskMapper.fromDTO(taskDTO, userId)).toList();
+
+        List<UUID> publicIds = taskService.createTasks(tasks);
+        return ResponseEntity.status(HttpStatus.CREATED).body(publicIds);
     }
 
     @GetMapping("/public/{public_id}")
-    public ResponseEntity<TaskDTO> getTaskById(@PathVariable UUID public_id) {
+    public ResponseEntity<TaskDTO> getTaskById(@PathVariable UUID public_id,
+                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) List<String> ifNoneMatch) {
+        // the row version is only looked up for conditional requests, otherwise it comes with the task
+        if (ifNoneMatch != null) {
+            Optional<Long> version = taskService.getTaskVersion(public_id);
+            if (version.isPresent() && matchesETag(ifNoneMatch, toETag(version.get()))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(toETag(version.get())).build();
+            }
+        }
+
         Task task = taskService.getTaskByPublicId(public_id);
         TaskDTO dto = taskMapper.toDTO(task);
-        return ResponseEntity.ok(dto);
+        return ResponseEntity.ok().eTag(toETag(task.getVersion())).body(dto);
     }
 
     @GetMapping("/my-tasks")
-    public ResponseEntity<List<TaskDTO>> getMyTasks() {
+    public ResponseEntity<List<? extends TaskSummaryDTO>> getMyTasks(TaskFilter filter,
+                                                                     @RequestParam(required = false) Integer limit,
+                                                                     @RequestParam(required = false) String cursor,
+                                                                     @RequestParam(required = false) String view,
+                                                                     @RequestParam(defaultValue = "false") boolean includeArchived,
+                                                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) List<String> ifNoneMatch) {
+        TaskView taskView = TaskView.fromParameter(view);
+        Long userId = taskMapper.getUserId();
+        TaskVersion version = taskService.getTaskListVersion(userId);
+        if (matchesETag(ifNoneMatch, version.toETag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(version.toETag()).build();
+        }
+
+        if (limit == null && cursor == null && filter.isEmpty()) {
+            // unpaged request, kept for clients that do not know about cursors yet.
+            // tagged with the version the tasks were read at, a write since the check above may have moved it
+            TaskSnapshot snapshot = taskService.getTasksForUser(version, taskView, includeArchived);
+            return ResponseEntity.ok().eTag(snapshot.getVersion().toETag()).body(toDTOs(snapshot.getTasks(), taskView));
+        }
+        if (includeArchived) {
+            // pages and filters are served from the indexes of the active tasks only
+            throw new IllegalArgumentException("Archived tasks can only be listed without paging or filters.");
+        }
+        if (limit == null && cursor == null) {
+            // filtered and sorted listings are always paged, without a limit the client would not know it only got the first page
+            throw new IllegalArgumentException("Filtered or sorted listings are paged, a limit is required.");
+        }
+
+        TaskCursor after = cursor == null ? null : TaskCursor.decode(cursor);
+        TaskPage page = taskService.getTaskPageForUser(userId, filter, after, limit == null ? DEFAULT_PAGE_SIZE : limit, taskView);
+        List<? extends TaskSummaryDTO> taskDTOs = toDTOs(page.getTasks(), taskView);
+
+        // the page is read after the version and from the same database, see ReplicaRoutingDataSource,
+        // so it is never older than the tag
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(version.toETag());
+        if (page.hasNext()) {
+            response.header(NEXT_CURSOR_HEADER, page.getNext().encode());
+        }
+        return response.body(taskDTOs);
+    }
+
+    @GetMapping(value = "/my-tasks/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamMyTasks(@RequestParam(required = false) String view) {
+        TaskView taskView = TaskView.fromParameter(view);
+        Long userId = taskMapper.getUserId();
+        String userName = taskMapper.getUserNameFromUserId(userId);
+
+        StreamingResponseBody body = outputStream -> taskService.streamTasksForUser(userId, taskView,
+                task -> writeLine(outputStream, taskView == TaskView.SUMMARY
+                        ? taskMapper.toSummaryDTO(task, userName)
+                        : taskMapper.toDTO(task, userName)));
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    // COPY writes straight into the response, nothing is buffered in between
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportMyTasks(@RequestParam(required = false) String format) {
+        TaskDataFormat dataFormat = TaskDataFormat.fromParameter(format);
         Long userId = taskMapper.getUserId();
-        List<Task> tasks = taskService.getTasksForUser(userId);
-        List<TaskDTO> taskDTOs = tasks.stream().map(taskMapper::toDTO).toList();
-        return ResponseEntity.ok(taskDTOs);
+
+        boolean json = dataFormat == TaskDataFormat.JSON;
+        StreamingResponseBody body = outputStream -> taskService.exportTasksForUser(userId, dataFormat, outputStream);
+        return ResponseEntity.ok()
+                .contentType(json ? MediaType.APPLICATION_NDJSON : TEXT_CSV)
+                .header(HttpHeaders.CONTENT_DISPOSITION, json ? "attachment; filename=\"tasks.ndjson\"" : "attachment; filename=\"tasks.csv\"")
+                .body(body);
     }
 
+    // the request body is read by COPY as it arrives, the format follows the content type
+    @PostMapping(value = "/import", consumes = TEXT_CSV_VALUE)
+    public ResponseEntity<Map<String, Long>> importCsv(InputStream body) {
+        return importTasks(TaskDataFormat.CSV, body);
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Map<String, Long>> importJson(InputStream body) {
+        return importTasks(TaskDataFormat.JSON, body);
+    }
+
+    private ResponseEntity<Map<String, Long>> importTasks(TaskDataFormat format, InputStream body) {
+        Long userId = taskMapper.getUserId();
+        long imported = taskService.importTasksForUser(userId, format, body);
+        return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("imported", imported));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<? extends TaskSummaryDTO>> searchMyTasks(@RequestParam(required = false) String q,
+                                                                        @RequestParam(required = false) Integer limit,
+                                                                        @RequestParam(required = false) String cursor,
+                                                                        @RequestParam(required = false) String view) {
+        TaskView taskView = TaskView.fromParameter(view);
+        Long userId = taskMapper.getUserId();
+
+        TaskSearchCursor after = cursor == null ? null : TaskSearchCursor.decode(cursor);
+        TaskSearchPage page = taskService.searchTasksForUser(userId, q, after, limit == null ? DEFAULT_PAGE_SIZE : limit, taskView);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.hasNext()) {
+            response.header(NEXT_CURSOR_HEADER, page.getNext().encode());
+        }
+        return response.body(toDTOs(page.getTasks(), taskView));
+    }
+
+    // totals come from counters the database keeps per user, reading them does not depend on the number of tasks.
+    // overdue is the exception, it changes when the date does without any write, so it is counted on every call
+    // from the index of open tasks and costs in proportion to the overdue tasks of the caller
+    @GetMapping("/stats")
+    public ResponseEntity<TaskStats> getMyStats() {
+        Long userId = taskMapper.getUserId();
+        return ResponseEntity.ok(taskService.getStatsForUser(userId));
+    }
+
+    // the expected version comes from If-Match, or from the version field of the body when the header is missing
     @PutMapping("/update")
-    public ResponseEntity<Void> updateTask(@RequestBody TaskDTO taskDTO) {
+    public ResponseEntity<Void> updateTask(@RequestBody TaskDTO taskDTO,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         Task task = taskMapper.fromDTO(taskDTO);
-        taskService.updateTask(task);
-        return ResponseEntity.ok().build();
+        if (ifMatch != null) {
+            task.setVersion(expectedVersion(ifMatch));
+        }
+        Task updated = taskService.updateTask(task);
+        return ResponseEntity.ok().eTag(toETag(updated.getVersion())).build();
+    }
+
+    @PatchMapping(value = "/public/{public_id}", consumes = MERGE_PATCH_JSON_VALUE)
+    public ResponseEntity<TaskDTO> patchTask(@PathVariable UUID public_id, @RequestBody JsonNode patch,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        TaskPatch taskPatch = taskMapper.toPatch(patch);
+        Task task = taskService.patchTask(public_id, taskPatch, ifMatch == null ? null : expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(toETag(task.getVersion())).body(taskMapper.toDTO(task));
     }
 
     @PatchMapping("/public/{public_id}/complete")
@@ -69,4 +248,68 @@ public class TaskController {
         taskService.deleteTask(public_id);
         return ResponseEntity.ok().build();
     }
+
+    // answers with every id of the caller that is completed now, whether this request completed it or it already was
+    @PostMapping("/bulk/complete")
+    public ResponseEntity<List<UUID>> markTasksAsCompleted(@RequestBody List<UUID> publicIds) {
+        Long userId = taskMapper.getUserId();
+        return ResponseEntity.ok(taskService.markTasksAsCompleted(userId, publicIds));
+    }
+
+    @PostMapping("/bulk/delete")
+    public ResponseEntity<List<UUID>> deleteTasks(@RequestBody List<UUID> publicIds) {
+        Long userId = taskMapper.getUserId();
+        return ResponseEntity.ok(taskService.deleteTasks(userId, publicIds));
+    }
+
+    private List<? extends TaskSummaryDTO> toDTOs(List<Task> tasks, TaskView view) {
+        return view == TaskView.SUMMARY ? taskMapper.toSummaryDTOs(tasks) : taskMapper.toDTOs(tasks);
+    }
+
+    private void writeLine(OutputStream outputStream, TaskSummaryDTO taskDTO) {
+        try {
+            ndjsonWriter.writeValue(outputStream, taskDTO);
+            outputStream.write('\n');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static String toETag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    // If-Match uses the strong comparison, a weak or unknown tag can never match the current version.
+    // * matches any version, so the write is not made conditional
+    private static Long expectedVersion(String ifMatch) {
+        String tag = ifMatch.trim();
+        if (tag.equals("*")) {
+            return null;
+        }
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException ignored) {
+                // falls through to the conflict below
+            }
+        }
+        throw new TaskVersionConflictException();
+    }
+
+    private static boolean matchesETag(List<String> ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch) {
+            String tag = candidate.trim();
+            // If-None-Match uses the weak comparison, so a weak validator still matches
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
\ No newline at end of file
@@ -5,12 +5,24 @@
 
 package com.example.todoapp.task.controller;
 
+import com.example.todoapp.config.security.AuthenticatedUser;
 import com.example.todoapp.task.Task;
+import com.example.todoapp.task.TaskPatch;
 import com.example.todoapp.user.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Component
 public class TaskMapper {
 
@@ -22,6 +34,11 @@ public class TaskMapper {
     }
 
     public Task fromDTO(TaskDTO taskDTO) {
+        return fromDTO(taskDTO, getUserId());
+    }
+
+    // for callers that map many tasks of the same user and already looked the user up once
+    public Task fromDTO(TaskDTO taskDTO, Long userId) {
         Task task = new Task();
         task.setPublicId(taskDTO.getPublicId());
         task.setName(taskDTO.getName());
@@ -29,34 +46,118 @@ public class TaskMapper {
         task.setDeadline(taskDTO.getDeadline());
         task.setPriority(taskDTO.getPriority());
         task.setCompleted(taskDTO.getComplete());
-
-        String userName = SecurityContextHolder.getContext().getAuthentication().getName();
-        Long userId = userService.findUserIdByUserName(userName);
         task.setUserId(userId);
+        task.setVersion(taskDTO.getVersion());
         return task;
     }
 
+    // reads a JSON merge patch (RFC 7396) with the field names of TaskDTO, an explicit null clears the field
+    public TaskPatch toPatch(JsonNode patch) {
+        if (patch == null || !patch.isObject()) {
+            throw new IllegalArgumentException("Patch must be a JSON object.");
+        }
+        TaskPatch taskPatch = new TaskPatch();
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            switch (field.getKey()) {
+                case "name" -> taskPatch.setName(textOf(value, "name"));
+                case "description" -> taskPatch.setDescription(textOf(value, "description"));
+                case "deadline" -> taskPatch.setDeadline(dateOf(value));
+                case "priority" -> {
+                    if (!value.isNull() && !value.isInt()) {
+                        throw new IllegalArgumentException("Invalid value for priority.");
+                    }
+                    taskPatch.setPriority(value.isNull() ? null : value.intValue());
+                }
+                case "complete" -> {
+                    if (!value.isNull() && !value.isBoolean()) {
+                        throw new IllegalArgumentException("Invalid value for complete.");
+                    }
+                    taskPatch.setCompleted(value.isNull() ? null : value.booleanValue());
+                }
+                default -> throw new IllegalArgumentException("Field can not be patched: " + field.getKey() + ".");
+            }
+        }
+        return taskPatch;
+    }
+
     public TaskDTO toDTO(Task task) {
-        TaskDTO taskDTO = new TaskDTO();
-        taskDTO.setPublicId(task.getPublicId());
-        taskDTO.setName(task.getName());
-        taskDTO.setDescription(task.getDescription());
-        taskDTO.setDeadline(task.getDeadline());
-        taskDTO.setPriority(task.getPriority());
-        taskDTO.setComplete(task.getCompleted());
+        return toDTO(task, userService.findUserNameByUserId(task.getUserId()));
+    }
+
+    // resolves all owner names with a single query instead of one per task
+    public List<TaskDTO> toDTOs(List<Task> tasks) {
+        Map<Long, String> userNames = findUserNames(tasks);
+        return tasks.stream().map(task -> toDTO(task, userNames.get(task.getUserId()))).toList();
+    }
 
-        String userName = userService.findUserNameByUserId(task.getUserId());
-        taskDTO.setUserName(userName);
+    public List<TaskSummaryDTO> toSummaryDTOs(List<Task> tasks) {
+        Map<Long, String> userNames = findUserNames(tasks);
+        return tasks.stream().map(task -> toSummaryDTO(task, userNames.get(task.getUserId()))).toList();
+    }
 
+    public TaskDTO toDTO(Task task, String userName) {
+        TaskDTO taskDTO = new TaskDTO();
+        fillSummary(taskDTO, task, userName);
+        taskDTO.setDescription(task.getDescription());
         return taskDTO;
     }
 
+    public TaskSummaryDTO toSummaryDTO(Task task, String userName) {
+        TaskSummaryDTO taskSummaryDTO = new TaskSummaryDTO();
+        fillSummary(taskSummaryDTO, task, userName);
+        return taskSummaryDTO;
+    }
+
     public Long getUserId() {
-        String userName = SecurityContextHolder.getContext().getAuthentication().getName();
-        return userService.findUserIdByUserName(userName);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        // requests authenticated with a token carry the id, only other principals need the lookup
+        if (authentication.getPrincipal() instanceof AuthenticatedUser user && user.getId() != null) {
+            return user.getId();
+        }
+        return userService.findUserIdByUserName(authentication.getName());
+    }
+
+    public String getUserName() {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
     }
 
     public String getUserNameFromUserId(Long userId) {
         return userService.findUserNameByUserId(userId);
     }
+
+    private Map<Long, String> findUserNames(List<Task> tasks) {
+        Set<Long> userIds = tasks.stream().map(Task::getUserId).collect(Collectors.toSet());
+        return userService.findUserNamesByUserIds(userIds);
+    }
+
+    private void fillSummary(TaskSummaryDTO taskSummaryDTO, Task task, String userName) {
+        taskSummaryDTO.setPublicId(task.getPublicId());
+        taskSummaryDTO.setName(task.getName());
+        taskSummaryDTO.setDeadline(task.getDeadline());
+        taskSummaryDTO.setPriority(task.getPriority());
+        taskSummaryDTO.setComplete(task.getCompleted());
+        taskSummaryDTO.setUserName(userName);
+        taskSummaryDTO.setVersion(task.getVersion());
+    }
+
+    private static String textOf(JsonNode value, String field) {
+        if (!value.isNull() && !value.isTextual()) {
+            throw new IllegalArgumentException("Invalid value for " + field + ".");
+        }
+        return value.isNull() ? null : value.textValue();
+    }
+
+    private static LocalDate dateOf(JsonNode value) {
+        if (value.isNull()) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(textOf(value, "deadline"));
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Invalid value for deadline.");
+        }
+    }
 }
@@ -0,0 +1,20 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task.controller;
+
+import com.example.todoapp.task.TaskSort;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+// accepts the lower case sort keys used in query parameters, e.g. ?sort=priority
+@Component
+public class TaskSortConverter implements Converter<String, TaskSort> {
+
+    @Override
+    public TaskSort convert(String source) {
+        return TaskSort.fromParameter(source);
+    }
+}
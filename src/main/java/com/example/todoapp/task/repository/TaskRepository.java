@@ -6,81 +6,550 @@
 package com.example.todoapp.task.repository;
 
 import com.example.todoapp.task.Task;
+import com.example.todoapp.task.TaskCursor;
+import com.example.todoapp.task.TaskDataFormat;
+import com.example.todoapp.task.TaskFilter;
+import com.example.todoapp.task.TaskPage;
+import com.example.todoapp.task.TaskPatch;
+import com.example.todoapp.task.TaskSearchCursor;
+import com.example.todoapp.task.TaskSearchPage;
+import com.example.todoapp.task.TaskSnapshot;
+import com.example.todoapp.task.TaskSort;
+import com.example.todoapp.task.TaskStats;
+import com.example.todoapp.task.TaskVersion;
+import com.example.todoapp.task.TaskView;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
+import org.springframework.jdbc.UncategorizedSQLException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Repository
 @Transactional
 public class TaskRepository {
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final String JSON_LINES = "(FORMAT csv, QUOTE E'\\x01', DELIMITER E'\\x02')";
+    private static final String COLUMNS = "id, public_id, name, description, deadline, priority, completed, user_id, version";
+    private static final String SUMMARY_COLUMNS = "id, public_id, name, deadline, priority, completed, user_id, version";
+    // qualified for statements that join users, which has an id column as well
+    private static final String RETURNED_COLUMNS = "t.id, t.public_id, t.name, t.description, t.deadline, t.priority, t.completed, t.user_id, t.version";
+
     private final JdbcClient client;
+    private final JdbcClient streamingClient;
     private final TaskRowMapper rowMapper;
+    private final TaskSummaryRowMapper summaryRowMapper;
+    private final DataSource dataSource;
 
-    public TaskRepository(JdbcClient client, TaskRowMapper taskRowMapper) {
+    public TaskRepository(JdbcClient client, TaskRowMapper taskRowMapper, TaskSummaryRowMapper taskSummaryRowMapper, DataSource dataSource) {
         this.client = client;
         this.rowMapper = taskRowMapper;
+        this.summaryRowMapper = taskSummaryRowMapper;
+        this.dataSource = dataSource;
+
+        // postgres only uses a server side cursor when a fetch size is set and the connection is not in autocommit mode
+        JdbcTemplate streamingTemplate = new JdbcTemplate(dataSource);
+        streamingTemplate.setFetchSize(STREAM_FETCH_SIZE);
+        this.streamingClient = JdbcClient.create(streamingTemplate);
+    }
+
+
+    // returns the stored row, so generated columns like the public id come back without another read
+    public Task create(Task task) {
+        String sql = "INSERT INTO tasks (name, description, deadline, priority, completed, user_id) VALUES (?, ?, ?, ?, ?, ?) RETURNING " + COLUMNS;
+        return client.sql(sql).params(task.getName(), task.getDescription(), task.getDeadline(), task.getPriority(), task.getCompleted(), task.getUserId())
+                .query(rowMapper).single();
     }
 
+    // one statement for the whole batch. public ids are generated up front, the order rows come back in is not guaranteed
+    public List<UUID> createAll(List<Task> tasks) {
+        List<UUID> publicIds = tasks.stream().map(task -> UUID.randomUUID()).toList();
+        insertAll(publicIds, tasks, "").update();
+        return publicIds;
+    }
 
-    public int create(Task task) {
-        String sql = "INSERT INTO tasks (name, description, deadline, priority, completed, user_id) VALUES (?, ?, ?, ?, ?, ?)";
-        return client.sql(sql).params(task.getName(), task.getDescription(), task.getDeadline(), task.getPriority(), task.getCompleted(), task.getUserId()).update();
+    // like createAll, but returns the stored rows in the order of the given tasks, matched by their public ids
+    public List<Task> createAllRows(List<Task> tasks) {
+        List<UUID> publicIds = tasks.stream().map(task -> UUID.randomUUID()).toList();
+        Map<UUID, Task> rows = insertAll(publicIds, tasks, " RETURNING " + COLUMNS)
+                .query(rowMapper)
+                .list()
+                .stream()
+                .collect(Collectors.toMap(Task::getPublicId, Function.identity()));
+        return publicIds.stream().map(rows::get).toList();
     }
 
+    // each column travels as a single array parameter
+    private JdbcClient.StatementSpec insertAll(List<UUID> publicIds, List<Task> tasks, String returning) {
+        String sql = "INSERT INTO tasks (public_id, name, description, deadline, priority, completed, user_id) "
+                + "SELECT * FROM unnest(CAST(? AS UUID[]), CAST(? AS VARCHAR[]), CAST(? AS TEXT[]), CAST(? AS DATE[]), CAST(? AS INTEGER[]), CAST(? AS BOOLEAN[]), CAST(? AS BIGINT[]))"
+                + returning;
+        return client.sql(sql)
+                .params(toArray(publicIds),
+                        tasks.stream().map(Task::getName).toArray(String[]::new),
+                        tasks.stream().map(Task::getDescription).toArray(String[]::new),
+                        // dates are sent as ISO strings, the driver has no array encoding for LocalDate
+                        tasks.stream().map(task -> task.getDeadline().toString()).toArray(String[]::new),
+                        tasks.stream().map(Task::getPriority).toArray(Integer[]::new),
+                        tasks.stream().map(Task::getCompleted).toArray(Boolean[]::new),
+                        tasks.stream().map(Task::getUserId).toArray(Long[]::new));
+    }
+
+    @Transactional(readOnly = true)
     public List<Task> findSet(long userId) {
-        String sql = "SELECT * FROM tasks WHERE user_id = ? ORDER BY deadline DESC";
-        return client.sql(sql).params(userId).query(rowMapper).list();
+        return findSet(userId, TaskView.FULL, false);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Task> findSetIncludingArchived(long userId) {
+        return findSet(userId, TaskView.FULL, true);
+    }
+
+    // repeatable read gives both statements the same snapshot, the tasks are exactly those of the returned version
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public TaskSnapshot findSnapshot(long userId, TaskView view, boolean includeArchived) {
+        String versionSql = "SELECT COALESCE(SUM(changes), 0) FROM task_list_changes WHERE user_id = ?";
+        long version = client.sql(versionSql).params(userId).query(Long.class).single();
+        return new TaskSnapshot(new TaskVersion(userId, version), findSet(userId, view, includeArchived));
+    }
+
+    private List<Task> findSet(long userId, TaskView view, boolean includeArchived) {
+        if (!includeArchived) {
+            String sql = "SELECT " + columns(view) + " FROM tasks WHERE user_id = ? ORDER BY deadline DESC, id DESC";
+            return client.sql(sql).params(userId).query(mapper(view)).list();
+        }
+        String sql = "SELECT " + columns(view) + " FROM tasks WHERE user_id = ? "
+                + "UNION ALL SELECT " + columns(view) + " FROM tasks_archive WHERE user_id = ? ORDER BY deadline DESC, id DESC";
+        return client.sql(sql).params(userId, userId).query(mapper(view)).list();
+    }
+
+    @Transactional(readOnly = true)
+    public TaskPage findPage(long userId, TaskFilter filter, TaskCursor after, int limit, TaskView view) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        conditions.add("user_id = ?");
+        params.add(userId);
+
+        if (filter.getCompleted() != null) {
+            // inlined instead of bound so the planner can match the partial index on open tasks
+            conditions.add(filter.getCompleted() ? "completed = TRUE" : "completed = FALSE");
+        }
+        if (filter.getMinPriority() != null) {
+            conditions.add("priority >= ?");
+            params.add(filter.getMinPriority());
+        }
+        if (filter.getMaxPriority() != null) {
+            conditions.add("priority <= ?");
+            params.add(filter.getMaxPriority());
+        }
+        if (filter.getDueFrom() != null) {
+            conditions.add("deadline >= ?");
+            params.add(filter.getDueFrom());
+        }
+        if (filter.getDueTo() != null) {
+            conditions.add("deadline <= ?");
+            params.add(filter.getDueTo());
+        }
+
+        TaskSort sort = filter.getSort();
+        String direction = sort.isDescending() ? "DESC" : "ASC";
+        if (after != null) {
+            conditions.add(keyset(sort, after, params));
+        }
+        params.add(limit + 1);
+
+        // NULLS LAST matches the index on priority, in both directions rows without a key come after all others
+        String nulls = sort.isNullable() ? " NULLS LAST" : "";
+        String sql = "SELECT " + columns(view) + " FROM tasks WHERE " + String.join(" AND ", conditions)
+                + " ORDER BY " + sort.getColumn() + " " + direction + nulls + ", id " + direction + " LIMIT ?";
+        List<Task> rows = client.sql(sql).params(params).query(mapper(view)).list();
+        return TaskPage.of(rows, limit, sort);
+    }
+
+    @Transactional(readOnly = true)
+    public TaskSearchPage search(long userId, String query, TaskSearchCursor after, int limit, TaskView view) {
+        List<Object> params = new ArrayList<>();
+        params.add(query);
+        params.add(userId);
+        String keyset = "";
+        if (after != null) {
+            // ts_rank returns a real, the cursor is compared as one too so the last row of a page compares equal
+            keyset = " AND (ts_rank(search_vector, query), id) < (CAST(? AS REAL), ?)";
+            params.add(after.getRank());
+            params.add(after.getId());
+        }
+        params.add(limit + 1);
+
+        String sql = "SELECT " + columns(view) + ", ts_rank(search_vector, query) AS rank"
+                + " FROM tasks, websearch_to_tsquery('simple', ?) query"
+                + " WHERE user_id = ? AND search_vector @@ query" + keyset
+                + " ORDER BY rank DESC, id DESC LIMIT ?";
+        RowMapper<Task> taskMapper = mapper(view);
+        List<Map.Entry<Task, Float>> hits = client.sql(sql).params(params)
+                .query((rs, rowNum) -> Map.entry(taskMapper.mapRow(rs, rowNum), rs.getFloat("rank")))
+                .list();
+        return TaskSearchPage.of(hits, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamSet(long userId, TaskView view, Consumer<Task> consumer) {
+        String sql = "SELECT " + columns(view) + " FROM tasks WHERE user_id = ? ORDER BY deadline DESC, id DESC";
+        try (Stream<Task> tasks = streamingClient.sql(sql).params(userId).query(mapper(view)).stream()) {
+            tasks.forEach(consumer);
+        }
     }
 
+    @Transactional(readOnly = true)
     public Optional<Task> findById(long taskId) {
-        String sql = "SELECT * FROM tasks WHERE id = ?";
-        return client.sql(sql).params(taskId).query(rowMapper).optional();
+        String sql = "SELECT " + COLUMNS + " FROM tasks WHERE id = ? UNION ALL SELECT " + COLUMNS + " FROM tasks_archive WHERE id = ?";
+        return client.sql(sql).params(taskId, taskId).query(rowMapper).optional();
     }
 
+    // archived tasks keep their ids and public ids, lookups by them find the task in either table, see TaskArchiver
+    @Transactional(readOnly = true)
     public Optional<Task> findByPublicId(UUID publicId) {
-        String sql = "SELECT * FROM tasks WHERE public_id = ?";
-        return client.sql(sql).params(publicId).query(rowMapper).optional();
+        String sql = "SELECT " + COLUMNS + " FROM tasks WHERE public_id = ? "
+                + "UNION ALL SELECT " + COLUMNS + " FROM tasks_archive WHERE public_id = ?";
+        return client.sql(sql).params(publicId, publicId).query(rowMapper).optional();
     }
 
-    public int update(Task task, long taskId) {
-        String sql = "UPDATE tasks SET name = ?, description = ?, deadline = ?, priority = ?, completed = ?, user_id = ? WHERE id = ?";
-        return client.sql(sql).params(
-                task.getName(),
-                task.getDescription(),
-                task.getDeadline(),
-                task.getPriority(),
-                task.getCompleted(),
-                task.getUserId(),
-                taskId
-        ).update();
+    @Transactional(readOnly = true)
+    public Optional<Long> findVersion(UUID publicId) {
+        String sql = "SELECT version FROM tasks WHERE public_id = ? UNION ALL SELECT version FROM tasks_archive WHERE public_id = ?";
+        return client.sql(sql).params(publicId, publicId).query(Long.class).optional();
     }
 
-    public int update(Task task, UUID publicTaskId) {
-        String sql = "UPDATE tasks SET name = ?, description = ?, deadline = ?, priority = ?, completed = ?, user_id = ? WHERE public_id = ?";
-        return client.sql(sql).params(
+    // runs on the primary, a lagging replica could still miss a task that was just created
+    public boolean existsForUser(UUID publicId, String username) {
+        String sql = "SELECT EXISTS (SELECT 1 FROM tasks t JOIN users u ON u.id = t.user_id WHERE t.public_id = ? AND u.username = ?) "
+                + "OR EXISTS (SELECT 1 FROM tasks_archive t JOIN users u ON u.id = t.user_id WHERE t.public_id = ? AND u.username = ?)";
+        return client.sql(sql).params(publicId, username, publicId, username).query(Boolean.class).single();
+    }
+
+    // the task a patch is merged into, read on the primary like the write that follows it
+    public Optional<Task> findForUser(UUID publicId, String username) {
+        String sql = "SELECT " + RETURNED_COLUMNS + " FROM tasks t JOIN users u ON u.id = t.user_id WHERE t.public_id = ? AND u.username = ? "
+                + "UNION ALL SELECT " + RETURNED_COLUMNS + " FROM tasks_archive t JOIN users u ON u.id = t.user_id "
+                + "WHERE t.public_id = ? AND u.username = ?";
+        return client.sql(sql).params(publicId, username, publicId, username).query(rowMapper).optional();
+    }
+
+    @Transactional(readOnly = true)
+    public TaskStats findStats(long userId, LocalDate today) {
+        TaskStats stats = new TaskStats();
+        RowCallbackHandler addCounts = rs -> stats.add(rs.getInt("priority"), rs.getBoolean("completed"), rs.getLong("task_count"));
+
+        // an account without tasks has no counter rows, which sums to zero. the counters are installed together with their
+        // initial count and every write to tasks goes through the triggers, so there is nothing to recount
+        String sql = "SELECT priority, completed, SUM(task_count) AS task_count FROM task_counters WHERE user_id = ? GROUP BY 1, 2";
+        client.sql(sql).params(userId).query(addCounts);
+
+        // overdue changes with the date alone, no write could keep a counter of it current. it is counted on every call
+        // from the partial index of open tasks, which costs one index entry per overdue task of the user
+        String overdueSql = "SELECT COUNT(*) FROM tasks WHERE user_id = ? AND completed = FALSE AND deadline < ?";
+        stats.setOverdue(client.sql(overdueSql).params(userId, today).query(Long.class).single());
+        return stats;
+    }
+
+    // every write below matches the owner by username in the same statement and returns the written row,
+    // an empty result means the task does not exist or belongs to someone else.
+    // with a version set on the task the row also has to be at that version, otherwise nothing is written either.
+    // an archived task is moved back to tasks before it is updated, it may no longer be completed afterwards.
+    // completing it again changes nothing and deleting it removes it from the archive
+    public Optional<Task> update(Task task, UUID publicTaskId, String username) {
+        List<Object> params = new ArrayList<>(Arrays.asList(
                 task.getName(),
                 task.getDescription(),
                 task.getDeadline(),
                 task.getPriority(),
                 task.getCompleted(),
-                task.getUserId(),
-                publicTaskId
-        ).update();
+                publicTaskId,
+                username
+        ));
+        String sql = "UPDATE tasks t SET name = ?, description = ?, deadline = ?, priority = ?, completed = ? "
+                + "FROM users u WHERE t.public_id = ? AND t.user_id = u.id AND u.username = ?" + versionCondition(task.getVersion(), params)
+                + " RETURNING " + RETURNED_COLUMNS;
+        return orRestored(publicTaskId, task.getVersion(), username, () -> client.sql(sql).params(params).query(rowMapper).optional());
+    }
+
+    // only the columns in the patch are written, the column names come from TaskPatch and never from the request
+    public Optional<Task> patch(UUID publicTaskId, TaskPatch patch, Long expectedVersion, String username) {
+        List<String> assignments = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        patch.getChanges().forEach((column, value) -> {
+            assignments.add(column + " = ?");
+            params.add(value);
+        });
+        params.add(publicTaskId);
+        params.add(username);
+
+        String sql = "UPDATE tasks t SET " + String.join(", ", assignments)
+                + " FROM users u WHERE t.public_id = ? AND t.user_id = u.id AND u.username = ?" + versionCondition(expectedVersion, params)
+                + " RETURNING " + RETURNED_COLUMNS;
+        return orRestored(publicTaskId, expectedVersion, username, () -> client.sql(sql).params(params).query(rowMapper).optional());
+    }
+
+    public Optional<Task> complete(long taskId, String username) {
+        String sql = "UPDATE tasks t SET completed = TRUE FROM users u WHERE t.id = ? AND t.user_id = u.id AND u.username = ? RETURNING " + RETURNED_COLUMNS;
+        return client.sql(sql).params(taskId, username).query(rowMapper).optional()
+                .or(() -> findArchived("id", taskId, username));
     }
 
-    public int delete(long taskId) {
-        String sql = "DELETE FROM tasks WHERE id = ?";
-        return client.sql(sql).params(taskId).update();
+    public Optional<Task> complete(UUID publicTaskId, String username) {
+        String sql = "UPDATE tasks t SET completed = TRUE FROM users u WHERE t.public_id = ? AND t.user_id = u.id AND u.username = ? RETURNING " + RETURNED_COLUMNS;
+        return client.sql(sql).params(publicTaskId, username).query(rowMapper).optional()
+                .or(() -> findArchived("public_id", publicTaskId, username));
     }
 
-    public int delete(UUID publicTaskId) {
-        String sql = "DELETE FROM tasks WHERE public_id = ?";
-        return client.sql(sql).params(publicTaskId).update();
+    public Optional<Task> delete(long taskId, String username) {
+        return delete("id", taskId, username);
     }
 
+    public Optional<Task> delete(UUID publicTaskId, String username) {
+        return delete("public_id", publicTaskId, username);
+    }
+
+    // a task is in one of the two tables, the archive is only looked at when tasks had no match
+    private Optional<Task> delete(String idColumn, Object id, String username) {
+        String sql = "DELETE FROM %s t USING users u WHERE t." + idColumn + " = ? AND t.user_id = u.id AND u.username = ? RETURNING " + RETURNED_COLUMNS;
+        return client.sql(sql.formatted("tasks")).params(id, username).query(rowMapper).optional()
+                .or(() -> client.sql(sql.formatted("tasks_archive")).params(id, username).query(rowMapper).optional());
+    }
+
+    private Optional<Task> findArchived(String idColumn, Object id, String username) {
+        String sql = "SELECT " + RETURNED_COLUMNS + " FROM tasks_archive t JOIN users u ON u.id = t.user_id "
+                + "WHERE t." + idColumn + " = ? AND u.username = ?";
+        return client.sql(sql).params(id, username).query(rowMapper).optional();
+    }
+
+    // runs the write again after moving the task back from the archive. with a version expected the task is only
+    // moved when it is at that version, a write that would fail anyway leaves the archive alone
+    private Optional<Task> orRestored(UUID publicTaskId, Long expectedVersion, String username, Supplier<Optional<Task>> write) {
+        Optional<Task> written = write.get();
+        if (written.isPresent()) {
+            return written;
+        }
+        List<Object> params = new ArrayList<>(List.of(publicTaskId, username));
+        String sql = "WITH restored AS (DELETE FROM tasks_archive t USING users u WHERE t.public_id = ? AND t.user_id = u.id AND u.username = ?"
+                + versionCondition(expectedVersion, params) + " RETURNING " + RETURNED_COLUMNS + ") "
+                + "INSERT INTO tasks (" + COLUMNS + ") SELECT " + COLUMNS + " FROM restored";
+        return client.sql(sql).params(params).update() == 1 ? write.get() : written;
+    }
+
+    // every owned task that is completed afterwards is reported, including the ones that already were and archived
+    // tasks, which are all completed. only open tasks are written. the selects see the tasks as they were before the
+    // update, so a task the update completes is reported once, by the update
+    public List<UUID> completeAll(long userId, List<UUID> publicTaskIds) {
+        String sql = "WITH completed AS (UPDATE tasks SET completed = TRUE WHERE public_id = ANY(CAST(? AS UUID[])) AND user_id = ? "
+                + "AND completed IS DISTINCT FROM TRUE RETURNING public_id) "
+                + "SELECT public_id FROM completed "
+                + "UNION ALL SELECT public_id FROM tasks WHERE public_id = ANY(CAST(? AS UUID[])) AND user_id = ? AND completed = TRUE "
+                + "UNION ALL SELECT public_id FROM tasks_archive WHERE public_id = ANY(CAST(? AS UUID[])) AND user_id = ?";
+        String[] ids = toArray(publicTaskIds);
+        return client.sql(sql).params(ids, userId, ids, userId, ids, userId).query(UUID.class).list();
+    }
+
+    public List<UUID> deleteAll(long userId, List<UUID> publicTaskIds) {
+        String sql = "WITH active AS (DELETE FROM tasks WHERE public_id = ANY(CAST(? AS UUID[])) AND user_id = ? RETURNING public_id), "
+                + "archived AS (DELETE FROM tasks_archive WHERE public_id = ANY(CAST(? AS UUID[])) AND user_id = ? RETURNING public_id) "
+                + "SELECT public_id FROM active UNION ALL SELECT public_id FROM archived";
+        String[] ids = toArray(publicTaskIds);
+        return client.sql(sql).params(ids, userId, ids, userId).query(UUID.class).list();
+    }
+
+    // folds the task_list_changes rows of up to limit users into one row each, the sum and so the version stays the same.
+    // writers only insert, the rows a concurrent write adds are not visible to the delete and stay for the next run.
+    // returns the number of users folded
+    public int compactListChanges(int limit) {
+        String sql = "WITH picked AS (SELECT user_id FROM task_list_changes GROUP BY user_id HAVING COUNT(*) > 1 LIMIT ?), "
+                + "folded AS (DELETE FROM task_list_changes WHERE user_id IN (SELECT user_id FROM picked) RETURNING user_id, changes), "
+                + "kept AS (INSERT INTO task_list_changes (user_id, changes) SELECT user_id, SUM(changes) FROM folded GROUP BY user_id) "
+                + "SELECT COUNT(*) FROM picked";
+        return client.sql(sql).params(limit).query(Integer.class).single();
+    }
+
+    // the same for task_counters, one row per counter is left and counters that add up to 0 go away
+    public int compactCounters(int limit) {
+        String sql = "WITH picked AS (SELECT user_id FROM task_counters GROUP BY user_id "
+                + "HAVING COUNT(*) > COUNT(DISTINCT (priority, completed)) OR bool_or(task_count = 0) LIMIT ?), "
+                + "folded AS (DELETE FROM task_counters WHERE user_id IN (SELECT user_id FROM picked) "
+                + "RETURNING user_id, priority, completed, task_count), "
+                + "kept AS (INSERT INTO task_counters (user_id, priority, completed, task_count) "
+                + "SELECT user_id, priority, completed, SUM(task_count) FROM folded GROUP BY 1, 2, 3 HAVING SUM(task_count) <> 0) "
+                + "SELECT COUNT(*) FROM picked";
+        return client.sql(sql).params(limit).query(Integer.class).single();
+    }
+
+    // moves one batch of completed tasks with a deadline before the given day to the archive, in a single statement.
+    // rows locked by a concurrent write are skipped and picked up by a later run
+    public List<Task> archiveCompleted(LocalDate deadlineBefore, int limit) {
+        String sql = "WITH moved AS (DELETE FROM tasks WHERE id IN ("
+                + "SELECT id FROM tasks WHERE completed = TRUE AND deadline < ? ORDER BY deadline, id LIMIT ? FOR UPDATE SKIP LOCKED) "
+                + "RETURNING " + COLUMNS + ") "
+                + "INSERT INTO tasks_archive (" + COLUMNS + ") SELECT " + COLUMNS + " FROM moved RETURNING " + COLUMNS;
+        return client.sql(sql).params(deadlineBefore, limit).query(rowMapper).list();
+    }
+
+    // COPY streams rows between the database and the given stream without mapping them to objects.
+    // it takes no bind parameters, the user id is a number and inlined.
+    // JSON lines go through the csv format with quote and delimiter characters that never occur in JSON text,
+    // the text format would escape every backslash of the JSON escapes.
+    @Transactional(readOnly = true)
+    public void copyOut(long userId, TaskDataFormat format, OutputStream out) {
+        String sql = switch (format) {
+            case CSV -> "COPY (SELECT public_id AS \"publicId\", name, description, deadline, priority, completed AS complete "
+                    + "FROM " + allTasks(userId) + " ORDER BY id) TO STDOUT WITH (FORMAT csv, HEADER)";
+            case JSON -> "COPY (SELECT json_build_object('publicId', public_id, 'name', name, 'description', description, "
+                    + "'deadline', deadline, 'priority', priority, 'complete', completed) "
+                    + "FROM " + allTasks(userId) + " ORDER BY id) TO STDOUT WITH " + JSON_LINES;
+        };
+        withCopyManager((connection, copyManager) -> copyManager.copyOut(sql, out));
+    }
+
+    // an export is a backup of the account, archived tasks are part of it
+    private static String allTasks(long userId) {
+        return "(SELECT " + COLUMNS + " FROM tasks WHERE user_id = " + userId
+                + " UNION ALL SELECT " + COLUMNS + " FROM tasks_archive WHERE user_id = " + userId + ") all_tasks";
+    }
+
+    // rows are copied into a temporary table first, the user id is set by the insert and never taken from the data.
+    // the insert is one statement, so counters and the task list version are updated once for the whole import.
+    // public ids in the data are ignored, imported tasks get new ones
+    public long copyIn(long userId, TaskDataFormat format, InputStream in) {
+        return withCopyManager((connection, copyManager) -> {
+            try (Statement statement = connection.createStatement()) {
+                // the rows as name, description, deadline, priority and complete, numbered in the order they were sent
+                String rows;
+                if (format == TaskDataFormat.CSV) {
+                    statement.execute("CREATE TEMPORARY TABLE task_import (line BIGINT GENERATED ALWAYS AS IDENTITY, public_id TEXT, "
+                            + "name VARCHAR(80), description TEXT, deadline DATE, priority INTEGER, complete BOOLEAN) ON COMMIT DROP");
+                    copyManager.copyIn("COPY task_import (public_id, name, description, deadline, priority, complete) "
+                            + "FROM STDIN WITH (FORMAT csv, HEADER)", in);
+                    rows = "SELECT line, name, description, deadline, priority, complete FROM task_import";
+                } else {
+                    statement.execute("CREATE TEMPORARY TABLE task_import (line BIGINT GENERATED ALWAYS AS IDENTITY, doc JSON) ON COMMIT DROP");
+                    copyManager.copyIn("COPY task_import (doc) FROM STDIN WITH " + JSON_LINES, in);
+                    rows = "SELECT line, doc->>'name' AS name, doc->>'description' AS description, CAST(doc->>'deadline' AS DATE) AS deadline, "
+                            + "CAST(doc->>'priority' AS INTEGER) AS priority, CAST(doc->>'complete' AS BOOLEAN) AS complete "
+                            + "FROM task_import WHERE doc IS NOT NULL";
+                }
+                long incomplete = firstIncomplete(statement, rows);
+                if (incomplete > 0) {
+                    statement.execute("DROP TABLE task_import");
+                    throw new IllegalArgumentException("Invalid task data: name, deadline and priority are required (row " + incomplete + ").");
+                }
+                long imported = statement.executeUpdate("INSERT INTO tasks (name, description, deadline, priority, completed, user_id) "
+                        + "SELECT name, description, deadline, priority, COALESCE(complete, FALSE), " + userId + " FROM (" + rows + ") imported");
+                // dropped right away as well, the surrounding transaction may import more than once
+                statement.execute("DROP TABLE task_import");
+                return imported;
+            }
+        });
+    }
+
+    // the same required columns as a create. the priority column allows NULL, so without this check the import would too.
+    // name length and priority range are enforced by the columns, past deadlines are accepted so an export can be restored.
+    // returns the number of the first incomplete row, 0 if there is none
+    private static long firstIncomplete(Statement statement, String rows) throws SQLException {
+        try (ResultSet incomplete = statement.executeQuery("SELECT line FROM (" + rows + ") imported "
+                + "WHERE name IS NULL OR deadline IS NULL OR priority IS NULL ORDER BY line LIMIT 1")) {
+            return incomplete.next() ? incomplete.getLong("line") : 0;
+        }
+    }
+
+    // the connection of the surrounding transaction, unwrapped to the driver for its COPY support
+    private <T> T withCopyManager(CopyAction<T> action) {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            return action.run(connection, connection.unwrap(PGConnection.class).getCopyAPI());
+        } catch (SQLException ex) {
+            // bad input shows up as data or constraint errors, the message names the line and column of the data
+            String state = ex.getSQLState();
+            if (state != null && (state.startsWith("22") || state.startsWith("23"))) {
+                throw new IllegalArgumentException("Invalid task data: " + describe(ex));
+            }
+            throw new UncategorizedSQLException("COPY tasks", null, ex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private static String describe(SQLException ex) {
+        if (ex instanceof PSQLException psqlException && psqlException.getServerErrorMessage() != null) {
+            ServerErrorMessage message = psqlException.getServerErrorMessage();
+            return message.getWhere() == null ? message.getMessage() : message.getMessage() + " (" + message.getWhere() + ")";
+        }
+        return ex.getMessage();
+    }
+
+    @FunctionalInterface
+    private interface CopyAction<T> {
+        T run(Connection connection, CopyManager copyManager) throws SQLException, IOException;
+    }
+
+    // row comparison lets postgres continue the index scan right after the cursor instead of skipping an offset.
+    // a NULL key never compares, so NULL rows follow every keyed row and among themselves are ordered by id alone
+    private static String keyset(TaskSort sort, TaskCursor after, List<Object> params) {
+        String comparison = sort.isDescending() ? "<" : ">";
+        if (after.getKey() == null) {
+            params.add(after.getId());
+            return "(" + sort.getColumn() + " IS NULL AND id " + comparison + " ?)";
+        }
+        params.add(after.getKey());
+        params.add(after.getId());
+        String keyset = "(" + sort.getColumn() + ", id) " + comparison + " (?, ?)";
+        return sort.isNullable() ? "(" + keyset + " OR " + sort.getColumn() + " IS NULL)" : keyset;
+    }
+
+    private static String versionCondition(Long expectedVersion, List<Object> params) {
+        if (expectedVersion == null) {
+            return "";
+        }
+        params.add(expectedVersion);
+        return " AND t.version = ?";
+    }
+
+    private static String columns(TaskView view) {
+        return view == TaskView.SUMMARY ? SUMMARY_COLUMNS : COLUMNS;
+    }
+
+    private RowMapper<Task> mapper(TaskView view) {
+        return view == TaskView.SUMMARY ? summaryRowMapper : rowMapper;
+    }
+
+    // uuids are sent as text, the driver has no array encoding for them
+    private static String[] toArray(List<UUID> publicTaskIds) {
+        return publicTaskIds.stream().map(UUID::toString).toArray(String[]::new);
+    }
 }
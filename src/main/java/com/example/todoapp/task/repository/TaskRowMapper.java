@@ -21,9 +21,10 @@ public class TaskRowMapper implements RowMapper<Task> {
         task.setId(rs.getLong("id"));
         task.setName(rs.getString("name"));
         task.setDeadline(rs.getDate("deadline").toLocalDate());
-        task.setPriority(rs.getInt("priority"));
+        task.setPriority(rs.getObject("priority", Integer.class));
         task.setCompleted(rs.getBoolean("completed"));
         task.setUserId(rs.getLong("user_id"));
+        task.setVersion(rs.getLong("version"));
         task.setDescription(rs.getString("description"));
 
         task.setPublicId(UUID.fromString(rs.getString("public_id")));
@@ -0,0 +1,32 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task.repository;
+
+import com.example.todoapp.task.Task;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+@Component
+public class TaskSummaryRowMapper implements RowMapper<Task> {
+    @Override
+    public Task mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Task task = new Task();
+        task.setId(rs.getLong("id"));
+        task.setName(rs.getString("name"));
+        task.setDeadline(rs.getDate("deadline").toLocalDate());
+        task.setPriority(rs.getObject("priority", Integer.class));
+        task.setCompleted(rs.getBoolean("completed"));
+        task.setUserId(rs.getLong("user_id"));
+        task.setVersion(rs.getLong("version"));
+
+        task.setPublicId(UUID.fromString(rs.getString("public_id")));
+        return task;
+    }
+}
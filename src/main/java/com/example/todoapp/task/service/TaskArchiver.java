@@ -0,0 +1,66 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task.service;
+
+import com.example.todoapp.task.Task;
+import com.example.todoapp.task.repository.TaskRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+// moves completed tasks whose deadline is longer ago than the configured age to tasks_archive.
+// long lived accounts are mostly completed tasks, without them every listing reads and sorts rows nobody looks at.
+// disabled by default, archived tasks are only listed with includeArchived. by id they are still read, written,
+// deleted and exported like any other task, see TaskRepository
+@Component
+public class TaskArchiver {
+
+    private final TaskRepository taskRepository;
+    private final TaskCache taskCache;
+    private final boolean enabled;
+    private final Duration age;
+    private final int batchSize;
+
+    @Autowired
+    public TaskArchiver(TaskRepository taskRepository, TaskCache taskCache,
+                        @Value("${todoapp.tasks.archive.enabled:false}") boolean enabled,
+                        @Value("${todoapp.tasks.archive.age:90d}") Duration age,
+                        @Value("${todoapp.tasks.archive.batch-size:1000}") int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Archive batches need room for at least one task.");
+        }
+        this.taskRepository = taskRepository;
+        this.taskCache = taskCache;
+        this.enabled = enabled;
+        this.age = age;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${todoapp.tasks.archive.interval:1h}")
+    public void archiveCompleted() {
+        if (enabled) {
+            archiveCompleted(LocalDate.now().minusDays(age.toDays()));
+        }
+    }
+
+    // every batch is its own transaction, so locks are held briefly and a failure only loses the current batch
+    public long archiveCompleted(LocalDate deadlineBefore) {
+        long archived = 0;
+        List<Task> moved;
+        do {
+            moved = taskRepository.archiveCompleted(deadlineBefore, batchSize);
+            moved.stream().map(Task::getUserId).distinct().forEach(taskCache::evictUser);
+            moved.forEach(task -> taskCache.evictTask(task.getPublicId()));
+            archived += moved.size();
+        } while (moved.size() == batchSize);
+        return archived;
+    }
+}
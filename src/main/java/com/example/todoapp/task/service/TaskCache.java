@@ -0,0 +1,156 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task.service;
+
+import com.example.todoapp.task.Task;
+import com.example.todoapp.task.TaskSnapshot;
+import com.example.todoapp.task.TaskVersion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+// entries are served without asking the database while they were seen to match it within revalidate-after.
+// writes through this instance evict right away. a task list or a task written through another instance is noticed
+// once the window is over, when the version is read again and an entry at an older version is loaded again.
+// 0 reads the version on every request. cached tasks are copies, callers get copies of them as well
+@Component
+public class TaskCache implements MeterBinder {
+
+    private final Cache<Long, Verified<TaskSnapshot>> tasksByUser;
+    private final Cache<UUID, Verified<Task>> tasksByPublicId;
+    private final long revalidateAfterNanos;
+
+    @Autowired
+    public TaskCache(@Value("${todoapp.cache.tasks.max-weight:100000}") long maxWeight,
+                     @Value("${todoapp.cache.tasks.max-entries:10000}") long maxEntries,
+                     @Value("${todoapp.cache.tasks.ttl:30s}") Duration ttl,
+                     @Value("${todoapp.cache.tasks.revalidate-after:1s}") Duration revalidateAfter) {
+        // a list weighs as much as the tasks it holds, so a few huge accounts can not crowd out everyone else
+        this.tasksByUser = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Long userId, Verified<TaskSnapshot> snapshot) -> Math.max(1, snapshot.value.getTasks().size()))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.tasksByPublicId = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.revalidateAfterNanos = revalidateAfter.toNanos();
+    }
+
+    // the version of a cached list that is still within its window, empty when it has to be read from the database
+    public Optional<TaskVersion> getFreshListVersion(Long userId) {
+        Verified<TaskSnapshot> cached = tasksByUser.policy().getIfPresentQuietly(userId);
+        return isFresh(cached) ? Optional.of(cached.value.getVersion()) : Optional.empty();
+    }
+
+    // takes a version just read from the database, a list at that version starts a new window and an older one is dropped
+    public void verifyList(TaskVersion current) {
+        Verified<TaskSnapshot> cached = tasksByUser.policy().getIfPresentQuietly(current.getUserId());
+        if (cached == null) {
+            return;
+        }
+        if (cached.value.getVersion().getVersion() == current.getVersion()) {
+            cached.verified();
+        } else {
+            tasksByUser.asMap().remove(current.getUserId(), cached);
+        }
+    }
+
+    public TaskSnapshot getTasksForUser(TaskVersion current, Function<Long, TaskSnapshot> loader) {
+        Verified<TaskSnapshot> cached = tasksByUser.policy().getIfPresentQuietly(current.getUserId());
+        if (cached != null && cached.value.getVersion().getVersion() != current.getVersion()) {
+            tasksByUser.asMap().remove(current.getUserId(), cached);
+        }
+        return tasksByUser.get(current.getUserId(), userId -> new Verified<>(loader.apply(userId).copy())).value.copy();
+    }
+
+    public Optional<Long> getFreshTaskVersion(UUID publicId) {
+        Verified<Task> cached = tasksByPublicId.policy().getIfPresentQuietly(publicId);
+        return isFresh(cached) ? Optional.of(cached.value.getVersion()) : Optional.empty();
+    }
+
+    // a task past its window is checked against the version in the database, a missing task is not served either
+    public Task getTask(UUID publicId, Function<UUID, Optional<Long>> versionLoader, Function<UUID, Task> loader) {
+        Verified<Task> cached = tasksByPublicId.policy().getIfPresentQuietly(publicId);
+        if (cached != null && !isFresh(cached)) {
+            if (versionLoader.apply(publicId).filter(version -> version.equals(cached.value.getVersion())).isPresent()) {
+                cached.verified();
+            } else {
+                tasksByPublicId.asMap().remove(publicId, cached);
+            }
+        }
+        return new Task(tasksByPublicId.get(publicId, id -> new Verified<>(new Task(loader.apply(id)))).value);
+    }
+
+    public void evictUser(Long userId) {
+        evict(() -> tasksByUser.invalidate(userId));
+    }
+
+    public void evictTask(UUID publicId) {
+        evict(() -> tasksByPublicId.invalidate(publicId));
+    }
+
+    public CacheStats userListStats() {
+        return tasksByUser.stats();
+    }
+
+    public CacheStats taskStats() {
+        return tasksByPublicId.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, tasksByUser, "tasks.byUser");
+        CaffeineCacheMetrics.monitor(registry, tasksByPublicId, "tasks.byPublicId");
+    }
+
+    private boolean isFresh(Verified<?> cached) {
+        return cached != null && System.nanoTime() - cached.verifiedAt < revalidateAfterNanos;
+    }
+
+    private void evict(Runnable eviction) {
+        eviction.run();
+        // evict again once the transaction is over, a read in between could have cached the uncommitted state
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    // a cached value and when it was last seen to match the database
+    private static final class Verified<T> {
+        private final T value;
+        private volatile long verifiedAt = System.nanoTime();
+
+        private Verified(T value) {
+            this.value = value;
+        }
+
+        private void verified() {
+            verifiedAt = System.nanoTime();
+        }
+    }
+}
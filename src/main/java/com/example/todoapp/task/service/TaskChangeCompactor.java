@@ -0,0 +1,51 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task.service;
+
+import com.example.todoapp.task.repository.TaskRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// writes to tasks only ever add rows to task_list_changes and task_counters, so they never wait on each other.
+// this folds the rows of each user back into one per version and counter, so reading them stays a lookup of a few rows
+@Component
+public class TaskChangeCompactor {
+
+    private final TaskRepository taskRepository;
+    private final int batchSize;
+
+    @Autowired
+    public TaskChangeCompactor(TaskRepository taskRepository,
+                               @Value("${todoapp.tasks.compaction.batch-size:1000}") int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Compaction batches need room for at least one user.");
+        }
+        this.taskRepository = taskRepository;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${todoapp.tasks.compaction.interval:1m}")
+    public void compact() {
+        compactAll();
+    }
+
+    // every batch is its own transaction, a batch only locks rows no writer touches again
+    public long compactAll() {
+        long compacted = 0;
+        int folded;
+        do {
+            folded = taskRepository.compactListChanges(batchSize);
+            compacted += folded;
+        } while (folded == batchSize);
+        do {
+            folded = taskRepository.compactCounters(batchSize);
+            compacted += folded;
+        } while (folded == batchSize);
+        return compacted;
+    }
+}
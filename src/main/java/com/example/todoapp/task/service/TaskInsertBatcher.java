@@ -0,0 +1,230 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task.service;
+
+import com.example.todoapp.task.Task;
+import com.example.todoapp.task.repository.TaskRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// group commit for single task inserts: concurrent creates are collected for a short window and written with one
+// multi row insert and a single commit, each caller still gets its own row or its own error back.
+// disabled by default, then every create is a plain insert on the calling thread.
+@Component
+public class TaskInsertBatcher implements MeterBinder, AutoCloseable {
+
+    // queued by close, the flusher stops once everything in front of it is written
+    private static final PendingInsert STOP = new PendingInsert(null);
+
+    private final TaskRepository taskRepository;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final long resultTimeoutNanos;
+    private final BlockingQueue<PendingInsert> queue;
+    private final Thread flusher;
+    private volatile boolean closed;
+    private volatile DistributionSummary batchSizes;
+
+    @Autowired
+    public TaskInsertBatcher(TaskRepository taskRepository,
+                             @Value("${todoapp.tasks.insert-batching.enabled:false}") boolean enabled,
+                             @Value("${todoapp.tasks.insert-batching.max-batch-size:64}") int maxBatchSize,
+                             @Value("${todoapp.tasks.insert-batching.max-delay:2ms}") Duration maxDelay,
+                             @Value("${todoapp.tasks.insert-batching.max-queued:4096}") int maxQueued,
+                             @Value("${todoapp.tasks.insert-batching.result-timeout:10s}") Duration resultTimeout) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Insert batches need room for at least one task.");
+        }
+        this.taskRepository = taskRepository;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.resultTimeoutNanos = resultTimeout.toNanos();
+        this.queue = new LinkedBlockingQueue<>(maxQueued);
+        this.flusher = new Thread(this::run, "task-insert-batcher");
+        this.flusher.setDaemon(true);
+        if (enabled) {
+            flusher.start();
+        }
+    }
+
+    public Task create(Task task) {
+        // a caller inside a transaction expects the insert to be part of it, so it can not be moved to another connection
+        if (!enabled || closed || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return taskRepository.create(task);
+        }
+        PendingInsert pending = new PendingInsert(task);
+        if (!queue.offer(pending)) {
+            // the batcher can not keep up, writing directly is no worse than without it
+            return taskRepository.create(task);
+        }
+        if (closed) {
+            // the flusher may have stopped before this insert was queued
+            flushRemaining();
+        }
+        try {
+            return pending.result.get(resultTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            if (pending.claim()) {
+                // the flusher never got to it, so it is written here instead
+                return taskRepository.create(task);
+            }
+            throw new QueryTimeoutException("Task insert did not finish in time.", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            if (pending.claim()) {
+                throw new IllegalStateException("Interrupted before the task was written.", ex);
+            }
+            throw new IllegalStateException("Interrupted while the task was written.", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (ex.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private void run() {
+        List<PendingInsert> batch = new ArrayList<>(maxBatchSize);
+        try {
+            boolean stopping = false;
+            while (!stopping) {
+                PendingInsert first = queue.take();
+                if (first == STOP) {
+                    break;
+                }
+                batch.add(first);
+                // the window opens with the first insert, a lone insert waits at most max-delay
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    if (batch.remove(STOP)) {
+                        stopping = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingInsert next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == STOP) {
+                        stopping = true;
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException ex) {
+            // close stops the flusher with STOP, not an interrupt. the flag stays cleared so the writes below get a connection
+        } finally {
+            // whatever the reason the flusher ends, nothing it took or left queued is dropped, later creates write directly
+            closed = true;
+            flush(batch);
+            flushRemaining();
+        }
+    }
+
+    private void flush(List<PendingInsert> taken) {
+        // inserts whose caller gave up waiting are written by the caller
+        List<PendingInsert> batch = taken.stream().filter(PendingInsert::claim).toList();
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (batchSizes != null) {
+            batchSizes.record(batch.size());
+        }
+        try {
+            List<Task> created = taskRepository.createAllRows(batch.stream().map(pending -> pending.task).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(created.get(i));
+            }
+        } catch (RuntimeException ex) {
+            if (batch.size() == 1) {
+                batch.getFirst().result.completeExceptionally(ex);
+                return;
+            }
+            // one bad row fails the whole statement, retrying one by one hands the error to the task that caused it
+            for (PendingInsert pending : batch) {
+                try {
+                    pending.result.complete(taskRepository.create(pending.task));
+                } catch (Throwable itemEx) {
+                    pending.result.completeExceptionally(itemEx);
+                }
+            }
+        } catch (Throwable ex) {
+            // an error must not leave callers waiting, the flusher goes on with the next batch
+            batch.forEach(pending -> pending.result.completeExceptionally(ex));
+        }
+    }
+
+    private synchronized void flushRemaining() {
+        List<PendingInsert> remaining = new ArrayList<>();
+        while (queue.drainTo(remaining, maxBatchSize) > 0) {
+            remaining.remove(STOP);
+            flush(remaining);
+            remaining.clear();
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        if (enabled && flusher.isAlive()) {
+            // an interrupt would fail the connection checkout of a flush in progress, the flusher finishes it first
+            queue.put(STOP);
+            flusher.join();
+        }
+        flushRemaining();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        batchSizes = DistributionSummary.builder("tasks.insert.batch.size")
+                .description("Number of tasks written by one insert of the insert batcher")
+                .register(registry);
+    }
+
+    private static class PendingInsert {
+        private final Task task;
+        private final CompletableFuture<Task> result = new CompletableFuture<>();
+        // taken by either the flusher or the waiting caller, whoever comes first writes the task
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        PendingInsert(Task task) {
+            this.task = task;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
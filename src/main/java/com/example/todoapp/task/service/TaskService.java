@@ -6,29 +6,52 @@
 package com.example.todoapp.task.service;
 
 import com.example.todoapp.task.Task;
+import com.example.todoapp.task.TaskCursor;
+import com.example.todoapp.task.TaskDataFormat;
+import com.example.todoapp.task.TaskFilter;
+import com.example.todoapp.task.TaskPage;
+import com.example.todoapp.task.TaskPatch;
+import com.example.todoapp.task.TaskSearchCursor;
+import com.example.todoapp.task.TaskSearchPage;
+import com.example.todoapp.task.TaskSnapshot;
+import com.example.todoapp.task.TaskStats;
+import com.example.todoapp.task.TaskVersion;
+import com.example.todoapp.task.TaskView;
 import com.example.todoapp.task.repository.TaskRepository;
 import com.example.todoapp.user.service.UserService;
 import jakarta.persistence.EntityNotFoundException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 public class TaskService {
     private final TaskRepository taskRepository;
     private final UserService userService;
+    private final TaskCache taskCache;
+    private final TaskInsertBatcher taskInsertBatcher;
 
     private static final int MIN_PRIORITY = 1;
     private static final int MAX_PRIORITY = 5;
     private static final int MAX_NAME = 80;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_QUERY_LENGTH = 200;
+    private static final int MAX_BULK_SIZE = 1000;
+    private static final int MAX_PATCH_ATTEMPTS = 3;
 
-    public TaskService(TaskRepository taskRepository, UserService userService) {
+    public TaskService(TaskRepository taskRepository, UserService userService, TaskCache taskCache, TaskInsertBatcher taskInsertBatcher) {
         this.taskRepository = taskRepository;
         this.userService = userService;
+        this.taskCache = taskCache;
+        this.taskInsertBatcher = taskInsertBatcher;
     }
 
     private Task requiresExistingTask(Long taskId) {
@@ -37,13 +60,8 @@ public class TaskService {
         );
     }
 
-    public void verifyTaskOwnership(Task task) {
-        String currentUsername = SecurityContextHolder.getContext().getAuthentication().getName();
-        String taskOwnerUsername = userService.findUserNameByUserId(task.getUserId());
-
-        if (!currentUsername.equals(taskOwnerUsername)) {
-            throw new IllegalArgumentException("Task not found."); // same as for non-existing task
-        }
+    private static String currentUsername() {
+        return SecurityContextHolder.getContext().getAuthentication().getName();
     }
 
     private Task requiresExistingTask(UUID publicTaskId) {
@@ -56,68 +74,247 @@ public class TaskService {
         }
     }
 
+    private void evict(Task task) {
+        taskCache.evictUser(task.getUserId());
+        taskCache.evictTask(task.getPublicId());
+    }
+
     private void validateTask(Task task) {
-        if(task.getPriority() > MAX_PRIORITY || task.getPriority() < MIN_PRIORITY) {
+        if (task.getName() == null || task.getDeadline() == null || task.getPriority() == null) {
+            throw new IllegalArgumentException("Name, deadline and priority are required.");
+        }
+        validatePriority(task.getPriority());
+        validateDeadline(task.getDeadline());
+        validateName(task.getName());
+    }
+
+    // only what the patch itself gets wrong, the result is validated like a full update, see patchTask
+    private void validatePatch(TaskPatch patch) {
+        if (patch.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to update.");
+        }
+        for (String required : List.of(TaskPatch.NAME, TaskPatch.DEADLINE, TaskPatch.PRIORITY, TaskPatch.COMPLETED)) {
+            if (patch.isSet(required) && patch.getChanges().get(required) == null) {
+                throw new IllegalArgumentException("Name, deadline, priority and completion can not be removed.");
+            }
+        }
+    }
+
+    private void validatePriority(int priority) {
+        if(priority > MAX_PRIORITY || priority < MIN_PRIORITY) {
             throw new IllegalArgumentException("Priority outside priority levels.");
         }
-        if (task.getDeadline().isBefore(LocalDate.now())) {
+    }
+
+    private void validateDeadline(LocalDate deadline) {
+        if (deadline.isBefore(LocalDate.now())) {
             throw new IllegalArgumentException("Deadline can not be in the past.");
         }
-        if (task.getName().length() > MAX_NAME) {
+    }
+
+    private void validateName(String name) {
+        if (name.length() > MAX_NAME) {
             throw new IllegalArgumentException("Task name to long. 80 characters max.");
         }
     }
 
-    public void createTask(Task task) {
+    public Task createTask(Task task) {
         validateTask(task);
-        taskRepository.create(task);
+        Task created = taskInsertBatcher.create(task);
+        taskCache.evictUser(task.getUserId());
+        return created;
     }
 
-    public List<Task> getTasksForUser(Long userId) {
-        return taskRepository.findSet(userId);
+    public List<UUID> createTasks(List<Task> tasks) {
+        validateBulkSize(tasks.size());
+        List<TaskValidationException.ItemError> errors = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            try {
+                validateTask(tasks.get(i));
+            } catch (IllegalArgumentException ex) {
+                errors.add(new TaskValidationException.ItemError(i, ex.getMessage()));
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new TaskValidationException(errors);
+        }
+
+        List<UUID> publicIds = taskRepository.createAll(tasks);
+        tasks.stream().map(Task::getUserId).distinct().forEach(taskCache::evictUser);
+        return publicIds;
+    }
+
+    // the returned snapshot carries the version it was read at, which a write may have moved past the given one.
+    // only full listings of the active tasks are cached, summaries are read without the description
+    // and the archive is rarely asked for
+    public TaskSnapshot getTasksForUser(TaskVersion current, TaskView view, boolean includeArchived) {
+        if (includeArchived || view == TaskView.SUMMARY) {
+            return taskRepository.findSnapshot(current.getUserId(), view, includeArchived);
+        }
+        return taskCache.getTasksForUser(current, userId -> taskRepository.findSnapshot(userId, TaskView.FULL, false));
+    }
+
+    private void validateBulkSize(int size) {
+        if (size < 1 || size > MAX_BULK_SIZE) {
+            throw new IllegalArgumentException("Bulk requests take between 1 and 1000 tasks.");
+        }
+    }
+
+    private void validatePageSize(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and 200.");
+        }
+    }
+
+    public TaskPage getTaskPageForUser(Long userId, TaskFilter filter, TaskCursor cursor, int limit, TaskView view) {
+        validatePageSize(limit);
+        if (cursor != null && cursor.getSort() != filter.getSort()) {
+            throw new IllegalArgumentException("Invalid cursor."); // cursor was issued for another sort order
+        }
+        return taskRepository.findPage(userId, filter, cursor, limit, view);
+    }
+
+    public TaskSearchPage searchTasksForUser(Long userId, String query, TaskSearchCursor cursor, int limit, TaskView view) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query must not be empty.");
+        }
+        if (query.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Search query to long. 200 characters max.");
+        }
+        validatePageSize(limit);
+        return taskRepository.search(userId, query.strip(), cursor, limit, view);
+    }
+
+    public void streamTasksForUser(Long userId, TaskView view, Consumer<Task> consumer) {
+        taskRepository.streamSet(userId, view, consumer);
+    }
+
+    public void exportTasksForUser(Long userId, TaskDataFormat format, OutputStream out) {
+        taskRepository.copyOut(userId, format, out);
+    }
+
+    // the rows are checked by the database while they are copied, an invalid or incomplete row rejects the whole import
+    public long importTasksForUser(Long userId, TaskDataFormat format, InputStream in) {
+        long imported = taskRepository.copyIn(userId, format, in);
+        taskCache.evictUser(userId);
+        return imported;
+    }
+
+    public TaskStats getStatsForUser(Long userId) {
+        return taskRepository.findStats(userId, LocalDate.now());
+    }
+
+    // a cached list within its revalidation window answers without a query, see TaskCache
+    public TaskVersion getTaskListVersion(Long userId) {
+        return taskCache.getFreshListVersion(userId).orElseGet(() -> {
+            TaskVersion current = new TaskVersion(userId, userService.getTaskVersion(userId));
+            taskCache.verifyList(current);
+            return current;
+        });
+    }
+
+    public Optional<Long> getTaskVersion(UUID publicTaskId) {
+        return taskCache.getFreshTaskVersion(publicTaskId).or(() -> taskRepository.findVersion(publicTaskId));
     }
 
     public Task getTaskById(Long taskId) {
         return requiresExistingTask(taskId);
     }
 
+    // a cached task is served as it is within its revalidation window, after that only while it is still at the
+    // version in the database. a task that is not cached is read with its version in one query
     public Task getTaskByPublicId(UUID publicTaskId) {
-        return requiresExistingTask(publicTaskId);
+        return taskCache.getTask(publicTaskId, taskRepository::findVersion, this::requiresExistingTask);
     }
 
-    public void updateTask(Task task) {
+    // ownership is checked by the statement itself, a foreign task looks exactly like a missing one.
+    // a version on the task makes the write conditional on it, see TaskRepository.update
+    public Task updateTask(Task task) {
         validateTask(task);
+        String username = currentUsername();
+        Task updated = taskRepository.update(task, task.getPublicId(), username)
+                .orElseThrow(() -> notWritten(task.getPublicId(), task.getVersion(), username));
+        evict(updated);
+        return updated;
+    }
+
+    // the patch is merged into the stored task and the result validated like an update, so PUT and PATCH accept
+    // the same final states. the write is conditional on the version that was read, a change in between makes it match
+    // nothing and the patch is merged again into the new state, or answered with a conflict for an expected version
+    public Task patchTask(UUID publicTaskId, TaskPatch patch, Long expectedVersion) {
+        validatePatch(patch);
+        String username = currentUsername();
+        for (int attempt = 1; ; attempt++) {
+            Task stored = taskRepository.findForUser(publicTaskId, username)
+                    .orElseThrow(() -> new IllegalArgumentException("Task not found."));
+            if (expectedVersion != null && !expectedVersion.equals(stored.getVersion())) {
+                throw new TaskVersionConflictException();
+            }
+            validateTask(patch.applyTo(stored));
 
-        Task existingTask = requiresExistingTask(task.getPublicId());
-        verifyTaskOwnership(existingTask);
-        taskRepository.update(task, task.getPublicId());
+            Optional<Task> patched = taskRepository.patch(publicTaskId, patch, stored.getVersion(), username);
+            if (patched.isPresent()) {
+                evict(patched.get());
+                return patched.get();
+            }
+            if (expectedVersion != null || attempt == MAX_PATCH_ATTEMPTS) {
+                throw notWritten(publicTaskId, stored.getVersion(), username);
+            }
+        }
     }
 
-    public void markTaskAsCompleted(Long taskId) {
-        Task task = requiresExistingTask(taskId);
-        verifyTaskOwnership(task);
+    // only looked at after a conditional write matched nothing, the common path stays a single statement
+    private RuntimeException notWritten(UUID publicTaskId, Long expectedVersion, String username) {
+        if (expectedVersion != null && taskRepository.existsForUser(publicTaskId, username)) {
+            return new TaskVersionConflictException();
+        }
+        return new IllegalArgumentException("Task not found.");
+    }
 
-        task.setCompleted(true);
-        taskRepository.update(task, task.getId());
+    public void markTaskAsCompleted(Long taskId) {
+        Task task = taskRepository.complete(taskId, currentUsername())
+                .orElseThrow(() -> new EntityNotFoundException("Task not found."));
+        evict(task);
     }
 
     public void markTaskAsCompleted(UUID publicTaskId) {
-        Task task = requiresExistingTask(publicTaskId);
-        verifyTaskOwnership(task);
-
-        task.setCompleted(true);
-        taskRepository.update(task, task.getPublicId());
+        Task task = taskRepository.complete(publicTaskId, currentUsername())
+                .orElseThrow(() -> new IllegalArgumentException("Task not found."));
+        evict(task);
     }
 
     public void deleteTask(Long taskId){
-        Task delTask = requiresExistingTask(taskId);
-        verifyTaskOwnership(delTask);
-        taskRepository.delete(taskId);
+        Task delTask = taskRepository.delete(taskId, currentUsername())
+                .orElseThrow(() -> new EntityNotFoundException("Task not found."));
+        evict(delTask);
     }
 
     public void deleteTask(UUID publicTaskId){
-        Task delTask = requiresExistingTask(publicTaskId);
-        verifyTaskOwnership(delTask);
-        taskRepository.delete(publicTaskId);
+        Task delTask = taskRepository.delete(publicTaskId, currentUsername())
+                .orElseThrow(() -> new IllegalArgumentException("Task not found."));
+        evict(delTask);
+    }
+
+    public List<UUID> markTasksAsCompleted(Long userId, List<UUID> publicTaskIds) {
+        validateBulkSize(publicTaskIds.size());
+        List<UUID> completed = taskRepository.completeAll(userId, publicTaskIds);
+        evictAll(userId, completed);
+        return completed;
+    }
+
+    public List<UUID> deleteTasks(Long userId, List<UUID> publicTaskIds) {
+        validateBulkSize(publicTaskIds.size());
+        List<UUID> deleted = taskRepository.deleteAll(userId, publicTaskIds);
+        evictAll(userId, deleted);
+        return deleted;
+    }
+
+    // ids of other users and unknown ids are simply not affected, so nothing tells them apart
+    private void evictAll(Long userId, List<UUID> affected) {
+        if (affected.isEmpty()) {
+            return;
+        }
+        taskCache.evictUser(userId);
+        affected.forEach(taskCache::evictTask);
     }
 }
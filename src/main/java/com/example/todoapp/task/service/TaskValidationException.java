@@ -0,0 +1,40 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task.service;
+
+import java.util.List;
+
+// rejects a bulk request as a whole while telling the client about every invalid item at once
+public class TaskValidationException extends IllegalArgumentException {
+    private final List<ItemError> errors;
+
+    public TaskValidationException(List<ItemError> errors) {
+        super("Invalid tasks.");
+        this.errors = errors;
+    }
+
+    public List<ItemError> getErrors() {
+        return errors;
+    }
+
+    public static class ItemError {
+        private final int index;
+        private final String message;
+
+        public ItemError(int index, String message) {
+            this.index = index;
+            this.message = message;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task.service;
+
+// the task exists and belongs to the caller, but it changed since the version the client based its write on
+public class TaskVersionConflictException extends RuntimeException {
+
+    public TaskVersionConflictException() {
+        super("Task was changed in the meantime.");
+    }
+}
@@ -11,8 +11,11 @@ import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Repository
 @Transactional
@@ -30,21 +33,54 @@ public class UserRepository {
         return client.sql(sql).params(user.getUsername(), user.getPassword()).update();
     }
 
+    @Transactional(readOnly = true)
     public List<User> findAll() {
         String sql = "SELECT id, username, password FROM users";
         return client.sql(sql).query(rowMapper).list();
     }
 
+    @Transactional(readOnly = true)
     public Optional<User> findByUsername(String username) {
         String sql = "SELECT id, username, password FROM users WHERE username = ?";
         return client.sql(sql).params(username).query(rowMapper).optional();
     }
 
+    // the password hash a login is checked against, read on the primary. a replica could still hold the hash from
+    // before a password change or miss an account that was just registered
+    public Optional<User> findCredentials(String username) {
+        String sql = "SELECT id, username, password FROM users WHERE username = ?";
+        return client.sql(sql).params(username).query(rowMapper).optional();
+    }
+
+    @Transactional(readOnly = true)
     public Optional<User> findById(Long userId) {
         String sql = "SELECT id, username, password FROM users WHERE id = ?";
         return client.sql(sql).params(userId).query(rowMapper).optional();
     }
 
+    @Transactional(readOnly = true)
+    public Map<Long, String> findUsernamesByIds(Collection<Long> userIds) {
+        String sql = "SELECT id, username FROM users WHERE id = ANY(?)";
+        return client.sql(sql).param(userIds.toArray(Long[]::new))
+                .query((rs, rowNum) -> Map.entry(rs.getLong("id"), rs.getString("username")))
+                .list().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    // the sum of the task_list_changes rows of the user, empty for an unknown user
+    @Transactional(readOnly = true)
+    public Optional<Long> findTaskVersion(long userId) {
+        String sql = "SELECT COALESCE(SUM(c.changes), 0) FROM users u LEFT JOIN task_list_changes c ON c.user_id = u.id "
+                + "WHERE u.id = ? GROUP BY u.id";
+        return client.sql(sql).params(userId).query(Long.class).optional();
+    }
+
+    // only replaces the hash that was checked, a password changed in the meantime is kept
+    public int updatePassword(String username, String oldPassword, String newPassword) {
+        String sql = "UPDATE users SET password = ? WHERE username = ? AND password = ?";
+        return client.sql(sql).params(newPassword, username, oldPassword).update();
+    }
+
     public int delete(String username) {
         String sql = "DELETE FROM users WHERE username = ?";
         return client.sql(sql).params(username).update();
@@ -5,24 +5,31 @@
 
 package com.example.todoapp.user.service;
 
+import com.example.todoapp.config.security.CustomUserDetailsService;
+import com.example.todoapp.config.security.OffloadedPasswordEncoder;
 import com.example.todoapp.user.User;
 import com.example.todoapp.user.repository.UserRepository;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.Map;
+
 
 @Service
 public class UserService {
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final OffloadedPasswordEncoder passwordEncoder;
+    private final CustomUserDetailsService userDetailsService;
 
     public UserService(UserRepository userRepository,
-                       PasswordEncoder passwordEncoder) {
+                       OffloadedPasswordEncoder passwordEncoder,
+                       CustomUserDetailsService userDetailsService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userDetailsService = userDetailsService;
     }
 
     private void validateUser(User user) {
@@ -43,9 +50,16 @@ public class UserService {
     }
 
     public User authenticate(String username, String rawPassword) {
-        return userRepository.findByUsername(username).filter(
-                user -> passwordEncoder.matches(rawPassword, user.getPassword())).orElseThrow(
-                        () -> new BadCredentialsException("Invalid password or username."));
+        User user = userRepository.findCredentials(username).orElseThrow(
+                () -> new BadCredentialsException("Invalid password or username."));
+        // same upgrade as on login through the authentication manager, hashed again by the call that checked the password
+        String hash = passwordEncoder.matchesAndUpgrade(rawPassword, user.getPassword()).orElseThrow(
+                () -> new BadCredentialsException("Invalid password or username."));
+        if (!hash.equals(user.getPassword())) {
+            userRepository.updatePassword(username, user.getPassword(), hash);
+            user.setPassword(hash);
+        }
+        return user;
     }
 
 
@@ -61,11 +75,24 @@ public class UserService {
         );
     }
 
+    public Map<Long, String> findUserNamesByUserIds(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return Map.of();
+        }
+        return userRepository.findUsernamesByIds(userIds);
+    }
+
+    public long getTaskVersion(Long userId) {
+        return userRepository.findTaskVersion(userId).orElseThrow(
+                () -> new IllegalArgumentException("User not found.")
+        );
+    }
+
     public void deleteSelf(User delUser) {
         String username = delUser.getUsername();
         String rawPassword = delUser.getPassword();
 
-        userRepository.findByUsername(username).filter(
+        userRepository.findCredentials(username).filter(
                 user -> passwordEncoder.matches(rawPassword, user.getPassword())).orElseThrow(
                 () -> new BadCredentialsException("Invalid password or username.")
         );
@@ -76,5 +103,6 @@ public class UserService {
         }
 
         userRepository.delete(username);
+        userDetailsService.evict(username);
     }
 }
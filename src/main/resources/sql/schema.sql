@@ -2,6 +2,7 @@
 -- Copyright (c) 2025 Jon Breid
 
 CREATE EXTENSION IF NOT EXISTS pgcrypto;
+CREATE EXTENSION IF NOT EXISTS btree_gin;
 
 CREATE TABLE IF NOT EXISTS users(
     id BIGINT PRIMARY KEY GENERATED BY DEFAULT AS IDENTITY,
@@ -20,3 +21,185 @@ CREATE TABLE IF NOT EXISTS tasks(
    completed BOOLEAN DEFAULT FALSE,
    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE
 );
+
+-- row version for optimistic concurrency, writes can require the version the client last read, see TaskRepository.update.
+-- bumped by the trigger below so every update of a task counts, whichever statement it comes from.
+ALTER TABLE tasks ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- keyset pagination of the tasks of a user, see TaskRepository.findPage
+CREATE INDEX IF NOT EXISTS tasks_user_deadline_idx ON tasks (user_id, deadline DESC, id DESC);
+
+-- filtered and sorted task listings, see TaskRepository.findPage
+CREATE INDEX IF NOT EXISTS tasks_user_open_deadline_idx ON tasks (user_id, deadline DESC, id DESC) WHERE completed = FALSE;
+-- tasks without a priority sort last, the index replaces one that kept them first
+DROP INDEX IF EXISTS tasks_user_priority_idx;
+CREATE INDEX IF NOT EXISTS tasks_user_priority_nulls_last_idx ON tasks (user_id, priority DESC NULLS LAST, id DESC);
+CREATE INDEX IF NOT EXISTS tasks_user_name_idx ON tasks (user_id, name, id);
+
+-- full text search over name and description, see TaskRepository.search.
+-- the simple configuration does not stem, so it works the same for tasks written in any language.
+-- user_id is part of the GIN index through btree_gin, a common word only matches within one account.
+ALTER TABLE tasks ADD COLUMN IF NOT EXISTS search_vector TSVECTOR GENERATED ALWAYS AS (
+    setweight(to_tsvector('simple', name), 'A') || setweight(to_tsvector('simple', COALESCE(description, '')), 'B')
+) STORED;
+CREATE INDEX IF NOT EXISTS tasks_user_search_idx ON tasks USING GIN (user_id, search_vector);
+
+-- per user task counts for GET /api/tasks/stats, maintained by the statement triggers below.
+-- a write adds its deltas as new rows instead of updating one row per counter, so writes of one user never wait on
+-- each other. a count is the sum of its rows, TaskChangeCompactor folds them back into one row per counter
+CREATE TABLE IF NOT EXISTS task_counters(
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    priority INTEGER NOT NULL,
+    completed BOOLEAN NOT NULL,
+    task_count BIGINT NOT NULL DEFAULT 0
+);
+-- the counters used to be one row per key, updated in place
+ALTER TABLE task_counters DROP CONSTRAINT IF EXISTS task_counters_pkey;
+CREATE INDEX IF NOT EXISTS task_counters_user_idx ON task_counters (user_id);
+
+-- function bodies are single quoted since the script runner splits statements on semicolons outside of literals.
+-- counters of deleted users are skipped, their rows are already gone through the cascade.
+-- updates that do not move a task between counters, like a rename, add no rows
+CREATE OR REPLACE FUNCTION task_counters_apply() RETURNS TRIGGER LANGUAGE plpgsql AS '
+BEGIN
+    IF TG_OP = ''INSERT'' THEN
+        INSERT INTO task_counters (user_id, priority, completed, task_count)
+        SELECT user_id, COALESCE(priority, 0), COALESCE(completed, FALSE), COUNT(*)
+        FROM new_rows
+        GROUP BY 1, 2, 3;
+    ELSIF TG_OP = ''DELETE'' THEN
+        INSERT INTO task_counters (user_id, priority, completed, task_count)
+        SELECT o.user_id, COALESCE(o.priority, 0), COALESCE(o.completed, FALSE), -COUNT(*)
+        FROM old_rows o JOIN users u ON u.id = o.user_id
+        GROUP BY 1, 2, 3;
+    ELSE
+        INSERT INTO task_counters (user_id, priority, completed, task_count)
+        SELECT user_id, priority, completed, SUM(delta)
+        FROM (SELECT user_id, COALESCE(priority, 0) AS priority, COALESCE(completed, FALSE) AS completed, -1 AS delta FROM old_rows
+              UNION ALL
+              SELECT user_id, COALESCE(priority, 0), COALESCE(completed, FALSE), 1 FROM new_rows) changes
+        GROUP BY 1, 2, 3 HAVING SUM(delta) <> 0;
+    END IF;
+    RETURN NULL;
+END';
+
+-- triggers and the initial count are installed together under a lock, so no write slips in between
+DO '
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_trigger WHERE tgname = ''tasks_counters_insert'') THEN
+        LOCK TABLE tasks IN SHARE ROW EXCLUSIVE MODE;
+        CREATE TRIGGER tasks_counters_insert AFTER INSERT ON tasks
+            REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION task_counters_apply();
+        CREATE TRIGGER tasks_counters_update AFTER UPDATE ON tasks
+            REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION task_counters_apply();
+        CREATE TRIGGER tasks_counters_delete AFTER DELETE ON tasks
+            REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION task_counters_apply();
+        DELETE FROM task_counters;
+        INSERT INTO task_counters (user_id, priority, completed, task_count)
+        SELECT user_id, COALESCE(priority, 0), COALESCE(completed, FALSE), COUNT(*) FROM tasks GROUP BY 1, 2, 3;
+    END IF;
+END';
+
+-- responses of writes sent with an Idempotency-Key, a retry with the same key gets the stored response, see IdempotencyStore.
+-- status stays NULL while the first request is still running, expired rows are purged by IdempotencyStore.purgeExpired
+CREATE TABLE IF NOT EXISTS idempotency_keys(
+    username VARCHAR(60) NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    request TEXT NOT NULL,
+    status INTEGER,
+    content_type VARCHAR(255),
+    location TEXT,
+    etag VARCHAR(255),
+    body BYTEA,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    PRIMARY KEY (username, idempotency_key)
+);
+CREATE INDEX IF NOT EXISTS idempotency_keys_created_idx ON idempotency_keys (created_at);
+
+-- the version of the task list of a user, used as ETag for task reads, is the sum of its rows here.
+-- every statement that writes tasks adds a row for each user it touched, so no code path can forget the version.
+-- writes only insert, two writes of one user never wait on each other the way updates of one version row did,
+-- that row stayed locked until commit and put all writes of a user in a queue.
+-- a snapshot sees the committed writes of a user as a prefix of their commit order, so every state has its own sum.
+-- TaskChangeCompactor folds the rows of a user into one, which leaves the sum as it is
+CREATE TABLE IF NOT EXISTS task_list_changes(
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    changes BIGINT NOT NULL DEFAULT 1
+);
+CREATE INDEX IF NOT EXISTS task_list_changes_user_idx ON task_list_changes (user_id);
+
+-- the version used to be a column of users bumped in place, it is carried over so ETags handed out before still match
+DO '
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_name = ''users'' AND column_name = ''task_version'') THEN
+        INSERT INTO task_list_changes (user_id, changes) SELECT id, task_version FROM users WHERE task_version > 0;
+        ALTER TABLE users DROP COLUMN task_version;
+    END IF;
+END';
+
+DROP TRIGGER IF EXISTS tasks_version_insert ON tasks;
+DROP TRIGGER IF EXISTS tasks_version_update ON tasks;
+DROP TRIGGER IF EXISTS tasks_version_delete ON tasks;
+DROP TRIGGER IF EXISTS tasks_bump_version_insert ON tasks;
+DROP TRIGGER IF EXISTS tasks_bump_version_update ON tasks;
+DROP TRIGGER IF EXISTS tasks_bump_version_delete ON tasks;
+
+-- changes of deleted users are skipped like their counters, their rows are already gone through the cascade
+CREATE OR REPLACE FUNCTION task_list_change() RETURNS TRIGGER LANGUAGE plpgsql AS '
+BEGIN
+    IF TG_OP = ''INSERT'' THEN
+        INSERT INTO task_list_changes (user_id) SELECT DISTINCT user_id FROM new_rows;
+    ELSIF TG_OP = ''DELETE'' THEN
+        INSERT INTO task_list_changes (user_id) SELECT DISTINCT o.user_id FROM old_rows o JOIN users u ON u.id = o.user_id;
+    ELSE
+        INSERT INTO task_list_changes (user_id) SELECT user_id FROM old_rows UNION SELECT user_id FROM new_rows;
+    END IF;
+    RETURN NULL;
+END';
+
+CREATE OR REPLACE TRIGGER tasks_list_change_insert AFTER INSERT ON tasks
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION task_list_change();
+CREATE OR REPLACE TRIGGER tasks_list_change_update AFTER UPDATE ON tasks
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION task_list_change();
+CREATE OR REPLACE TRIGGER tasks_list_change_delete AFTER DELETE ON tasks
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION task_list_change();
+
+CREATE OR REPLACE FUNCTION task_row_version() RETURNS TRIGGER LANGUAGE plpgsql AS '
+BEGIN
+    NEW.version := OLD.version + 1;
+    RETURN NEW;
+END';
+
+CREATE OR REPLACE TRIGGER tasks_row_version BEFORE UPDATE ON tasks
+    FOR EACH ROW EXECUTE FUNCTION task_row_version();
+
+-- completed tasks moved out of tasks by TaskArchiver, so listings and their indexes only cover the tasks still in use.
+-- rows keep their ids and public ids. archived tasks stay part of the counters, the triggers below add them back
+CREATE TABLE IF NOT EXISTS tasks_archive(
+    id BIGINT PRIMARY KEY,
+    public_id UUID NOT NULL UNIQUE,
+    name VARCHAR(80) NOT NULL,
+    description TEXT,
+    deadline DATE NOT NULL,
+    priority INTEGER,
+    completed BOOLEAN,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    version BIGINT NOT NULL DEFAULT 0,
+    archived_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+CREATE INDEX IF NOT EXISTS tasks_archive_user_deadline_idx ON tasks_archive (user_id, deadline DESC, id DESC);
+
+-- candidates of the archive job in the order it takes them, see TaskRepository.archiveCompleted
+CREATE INDEX IF NOT EXISTS tasks_completed_deadline_idx ON tasks (deadline, id) WHERE completed = TRUE;
+
+CREATE OR REPLACE TRIGGER tasks_archive_counters_insert AFTER INSERT ON tasks_archive
+    REFERENCING NEW TABLE AS new_rows FOR EACH STATEMENT EXECUTE FUNCTION task_counters_apply();
+CREATE OR REPLACE TRIGGER tasks_archive_counters_delete AFTER DELETE ON tasks_archive
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION task_counters_apply();
+
+-- archived tasks can be deleted or moved back by id, both change what a listing with includeArchived returns.
+-- moving tasks into the archive counts as a change through the delete from tasks already
+DROP TRIGGER IF EXISTS tasks_archive_bump_version_delete ON tasks_archive;
+DROP FUNCTION IF EXISTS task_version_bump();
+CREATE OR REPLACE TRIGGER tasks_archive_list_change_delete AFTER DELETE ON tasks_archive
+    REFERENCING OLD TABLE AS old_rows FOR EACH STATEMENT EXECUTE FUNCTION task_list_change();
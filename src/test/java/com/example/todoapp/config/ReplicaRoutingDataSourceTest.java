@@ -0,0 +1,106 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class ReplicaRoutingDataSourceTest {
+
+    private final ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(
+            mock(DataSource.class), List.of(mock(DataSource.class), mock(DataSource.class)), Duration.ofSeconds(5));
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        dataSource.unpin();
+    }
+
+    @Test
+    void writesUsePrimary() {
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void readOnlyRoundRobinsOverReplicas() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertEquals("replica-0", dataSource.determineCurrentLookupKey());
+        assertEquals("replica-1", dataSource.determineCurrentLookupKey());
+        assertEquals("replica-0", dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void laggingReplicaIsSkipped() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        dataSource.updateHealth("replica-0", Duration.ofSeconds(30));
+
+        assertEquals("replica-1", dataSource.determineCurrentLookupKey());
+        assertEquals("replica-1", dataSource.determineCurrentLookupKey());
+
+        dataSource.updateHealth("replica-0", Duration.ofMillis(100));
+        assertNotEquals(dataSource.determineCurrentLookupKey(), dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void fallsBackToPrimaryWhenNoReplicaIsInSync() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        dataSource.updateHealth("replica-0", Duration.ofSeconds(30));
+        dataSource.updateHealth("replica-1", null);
+
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void pinnedRequestReadsFromOneReplica() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        // both replicas are in sync enough to be used, but at different points of the primary's history
+        dataSource.updateHealth("replica-0", Duration.ZERO);
+        dataSource.updateHealth("replica-1", Duration.ofSeconds(3));
+
+        dataSource.pin();
+        Object versionRead = dataSource.determineCurrentLookupKey();
+        Object tasksRead = dataSource.determineCurrentLookupKey();
+        assertEquals(versionRead, tasksRead);
+        dataSource.unpin();
+
+        // without a pin consecutive transactions alternate between the two
+        assertNotEquals(dataSource.determineCurrentLookupKey(), dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void pinnedRequestMovesToPrimaryWhenItsReplicaFallsBehind() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        dataSource.updateHealth("replica-0", Duration.ZERO);
+        dataSource.updateHealth("replica-1", Duration.ofSeconds(3));
+
+        dataSource.pin();
+        String pinned = (String) dataSource.determineCurrentLookupKey();
+        dataSource.updateHealth(pinned, Duration.ofSeconds(30));
+
+        // not the other replica, it may be behind what the request already read
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, dataSource.determineCurrentLookupKey());
+        dataSource.updateHealth(pinned, Duration.ZERO);
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, dataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    void pinnedRequestStillWritesToPrimary() {
+        dataSource.pin();
+
+        assertEquals(ReplicaRoutingDataSource.PRIMARY, dataSource.determineCurrentLookupKey());
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertNotEquals(ReplicaRoutingDataSource.PRIMARY, dataSource.determineCurrentLookupKey());
+    }
+}
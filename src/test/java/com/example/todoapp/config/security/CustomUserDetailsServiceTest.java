@@ -0,0 +1,86 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+import com.example.todoapp.user.User;
+import com.example.todoapp.user.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class CustomUserDetailsServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Test
+    void loadAuthenticatedUser_CachedUntilEvicted() {
+        CustomUserDetailsService service = new CustomUserDetailsService(userRepository, 100, Duration.ofMinutes(1));
+        when(userRepository.findByUsername("username")).thenReturn(Optional.of(new User(7L, "username", "hash")));
+
+        AuthenticatedUser user = service.loadAuthenticatedUser("username");
+        service.loadAuthenticatedUser("username");
+
+        assertEquals(7L, user.getId());
+        assertNull(user.getPassword());
+        verify(userRepository, times(1)).findByUsername("username");
+
+        service.evict("username");
+        service.loadAuthenticatedUser("username");
+        verify(userRepository, times(2)).findByUsername("username");
+    }
+
+    @Test
+    void loadAuthenticatedUser_NotCachedByDefault() {
+        CustomUserDetailsService service = new CustomUserDetailsService(userRepository, 0, Duration.ofMinutes(1));
+        when(userRepository.findByUsername("username")).thenReturn(Optional.of(new User(7L, "username", "hash")));
+
+        service.loadAuthenticatedUser("username");
+        service.loadAuthenticatedUser("username");
+
+        verify(userRepository, times(2)).findByUsername("username");
+    }
+
+    @Test
+    void updatePassword_StoresNewHashAndEvicts() {
+        CustomUserDetailsService service = new CustomUserDetailsService(userRepository, 100, Duration.ofMinutes(1));
+        when(userRepository.findByUsername("username")).thenReturn(Optional.of(new User(7L, "username", "oldHash")));
+        when(userRepository.findCredentials("username")).thenReturn(Optional.of(new User(7L, "username", "oldHash")));
+        service.loadAuthenticatedUser("username");
+        UserDetails user = service.loadUserByUsername("username");
+
+        when(userRepository.findCredentials("username")).thenReturn(Optional.of(new User(7L, "username", "newHash")));
+        UserDetails updated = service.updatePassword(user, "newHash");
+
+        verify(userRepository).updatePassword("username", "oldHash", "newHash");
+        assertEquals("newHash", updated.getPassword());
+        service.loadAuthenticatedUser("username");
+        verify(userRepository, times(2)).findByUsername("username");
+        verify(userRepository, times(2)).findCredentials("username");
+    }
+
+    @Test
+    void loadUserByUsername_KeepsPasswordForLogin() {
+        CustomUserDetailsService service = new CustomUserDetailsService(userRepository, 100, Duration.ofMinutes(1));
+        when(userRepository.findCredentials("username")).thenReturn(Optional.of(new User(7L, "username", "hash")));
+
+        // the hash is read on the primary, never through the lookup that may go to a replica
+        assertEquals("hash", service.loadUserByUsername("username").getPassword());
+        when(userRepository.findCredentials("missing")).thenReturn(Optional.empty());
+        assertThrows(UsernameNotFoundException.class, () -> service.loadUserByUsername("missing"));
+        verify(userRepository, never()).findByUsername(any());
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.userdetails.User;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtTokenUtilTest {
+
+    private final JwtTokenUtil jwtTokenUtil = new JwtTokenUtil("test-secret-that-is-long-enough-for-hmac-sha-256");
+
+    @Test
+    void verify_ReadsAllClaims() {
+        AuthenticatedUser user = new AuthenticatedUser(42L, "username", "hash", AuthorityUtils.createAuthorityList("ROLE_USER"));
+        String token = jwtTokenUtil.generateToken(user);
+
+        VerifiedToken verified = jwtTokenUtil.verify(token);
+
+        assertEquals("username", verified.getSubject());
+        assertEquals(42L, verified.getUserId());
+        assertEquals(List.of("ROLE_USER"), verified.getRoles());
+        assertTrue(verified.getExpiresAt().isAfter(verified.getIssuedAt()));
+        assertFalse(verified.isExpired(Instant.now()));
+        assertTrue(verified.isExpired(verified.getExpiresAt()));
+        assertTrue(jwtTokenUtil.validateToken(verified, user));
+    }
+
+    @Test
+    void verify_PrincipalFromClaims() {
+        AuthenticatedUser user = new AuthenticatedUser(42L, "username", "hash", AuthorityUtils.createAuthorityList("ROLE_USER"));
+
+        AuthenticatedUser principal = jwtTokenUtil.verify(jwtTokenUtil.generateToken(user)).toPrincipal();
+
+        assertEquals(42L, principal.getId());
+        assertEquals("username", principal.getUsername());
+        assertNull(principal.getPassword());
+        assertEquals(AuthorityUtils.createAuthorityList("ROLE_USER"), principal.getAuthorities());
+    }
+
+    @Test
+    void verify_TokenWithoutUserId() {
+        String token = jwtTokenUtil.generateToken(User.withUsername("username").password("hash").roles("USER").build());
+
+        assertNull(jwtTokenUtil.verify(token).toPrincipal());
+        assertEquals("username", jwtTokenUtil.extractUsername(token));
+    }
+
+    @Test
+    void verify_RejectsForeignSignature() {
+        JwtTokenUtil other = new JwtTokenUtil("another-secret-that-is-long-enough-for-hmac-sha-256");
+        String token = other.generateToken(User.withUsername("username").password("hash").roles("USER").build());
+
+        assertThrows(JwtException.class, () -> jwtTokenUtil.verify(token));
+    }
+}
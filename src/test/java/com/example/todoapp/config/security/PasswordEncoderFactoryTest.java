@@ -0,0 +1,58 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PasswordEncoderFactoryTest {
+
+    // low costs keep the test fast, the production values only differ in numbers
+    private static PasswordEncoder encoder(String algorithm, int bcryptStrength) {
+        return new PasswordEncoderFactory(algorithm, bcryptStrength, 1024, 1, 1, 1024, 8, 1).create();
+    }
+
+    @Test
+    void create_PrefixesNewHashes() {
+        for (String algorithm : new String[]{"bcrypt", "argon2", "scrypt"}) {
+            PasswordEncoder encoder = encoder(algorithm, 4);
+            String hash = encoder.encode("secret");
+
+            assertTrue(hash.startsWith("{" + algorithm + "}"), hash);
+            assertTrue(encoder.matches("secret", hash));
+            assertFalse(encoder.matches("wrong", hash));
+            assertFalse(encoder.upgradeEncoding(hash));
+        }
+    }
+
+    @Test
+    void create_MatchesAndUpgradesUnprefixedBcrypt() {
+        // hashes stored before the prefix was introduced
+        String legacy = new BCryptPasswordEncoder(4).encode("secret");
+        PasswordEncoder encoder = encoder("bcrypt", 4);
+
+        assertTrue(encoder.matches("secret", legacy));
+        assertTrue(encoder.upgradeEncoding(legacy));
+    }
+
+    @Test
+    void create_UpgradesOtherAlgorithmAndLowerCost() {
+        String bcrypt = encoder("bcrypt", 4).encode("secret");
+        PasswordEncoder argon2 = encoder("argon2", 4);
+
+        assertTrue(argon2.matches("secret", bcrypt));
+        assertTrue(argon2.upgradeEncoding(bcrypt));
+        assertTrue(encoder("bcrypt", 5).upgradeEncoding(bcrypt));
+    }
+
+    @Test
+    void create_RejectsUnknownAlgorithm() {
+        assertThrows(IllegalArgumentException.class, () -> encoder("md5", 4));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class PasswordHashingExecutorTest {
+
+    private final PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1, Duration.ofSeconds(5));
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void call_RejectsRightAwayWhenSaturated() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            // one call running and one queued fill the executor
+            Future<String> running = callers.submit(() -> executor.call(() -> {
+                started.countDown();
+                await(release);
+                return "running";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> queued = callers.submit(() -> executor.call(() -> "queued"));
+            waitUntilQueued();
+
+            long start = System.nanoTime();
+            assertThrows(PasswordHashingBusyException.class, () -> executor.call(() -> "rejected"));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+            release.countDown();
+            assertEquals("running", running.get(5, TimeUnit.SECONDS));
+            assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void call_PassesErrorsOfTheWorkOn() {
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> executor.call(() -> {
+            throw new IllegalStateException("failed");
+        }));
+        assertEquals("failed", thrown.getMessage());
+    }
+
+    @Test
+    void offloadedEncoder_HashesAndMatches() {
+        PasswordEncoder encoder = new OffloadedPasswordEncoder(new BCryptPasswordEncoder(4), executor);
+
+        String hash = encoder.encode("secret");
+
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("wrong", hash));
+    }
+
+    @Test
+    void call_GivesUpAfterTheTimeout() throws Exception {
+        PasswordHashingExecutor slow = new PasswordHashingExecutor(1, 1, Duration.ofMillis(200));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> running = callers.submit(() -> slow.call(() -> {
+                started.countDown();
+                await(release);
+                return "running";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // queued behind the running call, it waits no longer than the timeout
+            long start = System.nanoTime();
+            assertThrows(PasswordHashingBusyException.class, () -> slow.call(() -> "queued"));
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+
+            assertThrows(Exception.class, () -> running.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+            slow.close();
+        }
+    }
+
+    @Test
+    void offloadedEncoder_UpgradesOnTheSameCall() {
+        PasswordHashingExecutor counted = spy(executor);
+        OffloadedPasswordEncoder encoder = new OffloadedPasswordEncoder(new BCryptPasswordEncoder(5), counted);
+        String oldHash = new BCryptPasswordEncoder(4).encode("secret");
+
+        String upgraded = encoder.matchesAndUpgrade("secret", oldHash).orElseThrow();
+
+        assertNotEquals(oldHash, upgraded);
+        assertTrue(new BCryptPasswordEncoder(5).matches("secret", upgraded));
+        assertFalse(encoder.upgradeEncoding(upgraded));
+        assertEquals(Optional.of(upgraded), encoder.matchesAndUpgrade("secret", upgraded));
+        assertEquals(Optional.empty(), encoder.matchesAndUpgrade("wrong", upgraded));
+        verify(counted, times(3)).call(any());
+    }
+
+    @Test
+    void login_RehashesWithoutASecondHashingCall() {
+        PasswordHashingExecutor counted = spy(executor);
+        OffloadedPasswordEncoder encoder = new OffloadedPasswordEncoder(new BCryptPasswordEncoder(5), counted);
+        UserDetails user = User.withUsername("alice").password(new BCryptPasswordEncoder(4).encode("secret")).roles("USER").build();
+        UserDetailsPasswordService passwordService = mock(UserDetailsPasswordService.class);
+        RehashingAuthenticationProvider provider = new RehashingAuthenticationProvider(username -> {
+            if (!username.equals("alice")) {
+                throw new UsernameNotFoundException("User not found");
+            }
+            return user;
+        }, passwordService, encoder);
+        // the first lookup of an unknown user prepares the hash that keeps its answer as slow as a real check
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("nobody", "secret")));
+        clearInvocations(counted);
+
+        provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("alice", "secret"));
+
+        verify(passwordService).updatePassword(eq(user), argThat(hash -> new BCryptPasswordEncoder(5).matches("secret", hash)));
+        verify(counted, times(1)).call(any());
+        assertThrows(BadCredentialsException.class,
+                () -> provider.authenticate(UsernamePasswordAuthenticationToken.unauthenticated("alice", "wrong")));
+    }
+
+    private void waitUntilQueued() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.queued() == 0) {
+            assertTrue(System.nanoTime() < deadline, "second call was not queued");
+            Thread.sleep(10);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
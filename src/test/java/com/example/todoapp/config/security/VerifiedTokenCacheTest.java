@@ -0,0 +1,80 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.config.security;
+
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.MalformedJwtException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VerifiedTokenCacheTest {
+
+    private final AtomicInteger verifications = new AtomicInteger();
+
+    private Function<String, VerifiedToken> verifierExpiringAt(Instant expiresAt) {
+        return token -> {
+            verifications.incrementAndGet();
+            return new VerifiedToken(token, 1L, List.of("ROLE_USER"), Instant.now(), expiresAt);
+        };
+    }
+
+    @Test
+    void verify_RepeatedTokenIsVerifiedOnce() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        Function<String, VerifiedToken> verifier = verifierExpiringAt(Instant.now().plusSeconds(3600));
+
+        VerifiedToken first = cache.verify("token-a", verifier);
+        VerifiedToken second = cache.verify("token-a", verifier);
+        cache.verify("token-b", verifier);
+
+        assertSame(first, second);
+        assertEquals(2, verifications.get());
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(2, cache.stats().missCount());
+    }
+
+    @Test
+    void verify_EntryEndsWithTheToken() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        Function<String, VerifiedToken> verifier = verifierExpiringAt(Instant.now().minusSeconds(1));
+
+        cache.verify("token-a", verifier);
+        cache.verify("token-a", verifier);
+
+        assertEquals(2, verifications.get());
+    }
+
+    @Test
+    void verify_InvalidTokenIsNotCached() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        Function<String, VerifiedToken> failing = token -> {
+            verifications.incrementAndGet();
+            throw new MalformedJwtException("invalid");
+        };
+
+        assertThrows(JwtException.class, () -> cache.verify("token-a", failing));
+        assertThrows(JwtException.class, () -> cache.verify("token-a", failing));
+
+        assertEquals(2, verifications.get());
+    }
+
+    @Test
+    void verify_DisabledAlwaysVerifies() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(0);
+        Function<String, VerifiedToken> verifier = verifierExpiringAt(Instant.now().plusSeconds(3600));
+
+        cache.verify("token-a", verifier);
+        cache.verify("token-a", verifier);
+
+        assertEquals(2, verifications.get());
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.idempotency;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// not transactional, concurrent requests have to see each others claims
+@SpringBootTest
+@Testcontainers
+public class IdempotencyFilterTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>("postgres:latest")
+            .withDatabaseName("testdb")
+            .withUsername("testuser")
+            .withPassword("secret")
+            .withInitScript("sql/schema.sql");
+
+    @DynamicPropertySource
+    static void overrideProps(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgreSQLContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgreSQLContainer::getUsername);
+        registry.add("spring.datasource.password", postgreSQLContainer::getPassword);
+        registry.add("spring.datasource.driver-class-name", postgreSQLContainer::getDriverClassName);
+    }
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+    @Autowired
+    private IdempotencyRepository idempotencyRepository;
+    @Autowired
+    private JdbcClient jdbcClient;
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    // stands in for the controller, answers like POST /api/tasks does
+    private final FilterChain createTask = (request, response) -> {
+        int execution = executions.incrementAndGet();
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+        httpResponse.setStatus(201);
+        httpResponse.setContentType("application/json");
+        httpResponse.setHeader(HttpHeaders.LOCATION, "http://localhost/api/tasks/public/" + execution);
+        httpResponse.setHeader(HttpHeaders.ETAG, "\"0\"");
+        httpResponse.getWriter().write("{\"execution\":" + execution + "}");
+    };
+
+    private static MockHttpServletResponse send(IdempotencyFilter filter, String username, String uri, String key, FilterChain chain) throws Exception {
+        return send(filter, username, uri, key, "", chain);
+    }
+
+    private static MockHttpServletResponse send(IdempotencyFilter filter, String username, String uri, String key, String body, FilterChain chain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY_HEADER, key);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(username, null, "ROLE_USER"));
+        try {
+            filter.doFilter(request, response, chain);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return response;
+    }
+
+    @Test
+    void concurrentRetriesRunOnce() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(idempotencyStore);
+        String key = UUID.randomUUID().toString();
+        int retries = 8;
+        ExecutorService clients = Executors.newFixedThreadPool(retries);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < retries; i++) {
+                responses.add(clients.submit(() -> {
+                    start.await();
+                    return send(filter, "alice", "/api/tasks", key, createTask);
+                }));
+            }
+            start.countDown();
+
+            int replayed = 0;
+            for (Future<MockHttpServletResponse> future : responses) {
+                MockHttpServletResponse response = future.get();
+                assertEquals(201, response.getStatus());
+                assertEquals("{\"execution\":1}", response.getContentAsString());
+                assertEquals("http://localhost/api/tasks/public/1", response.getHeader(HttpHeaders.LOCATION));
+                if ("true".equals(response.getHeader(IdempotencyFilter.REPLAYED_HEADER))) {
+                    replayed++;
+                }
+            }
+            assertEquals(1, executions.get());
+            assertEquals(retries - 1, replayed);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    void concurrentRetriesOnTwoInstancesRunOnce() throws Exception {
+        // two stores share nothing but the table, like two instances of the app
+        IdempotencyFilter first = new IdempotencyFilter(idempotencyStore);
+        IdempotencyFilter second = new IdempotencyFilter(new IdempotencyStore(idempotencyRepository, Duration.ofHours(1), Duration.ofMinutes(1), 100));
+        String key = UUID.randomUUID().toString();
+        ExecutorService clients = Executors.newFixedThreadPool(2);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<MockHttpServletResponse> a = clients.submit(() -> {
+                start.await();
+                return send(first, "alice", "/api/tasks", key, createTask);
+            });
+            Future<MockHttpServletResponse> b = clients.submit(() -> {
+                start.await();
+                return send(second, "alice", "/api/tasks", key, createTask);
+            });
+            start.countDown();
+
+            // the loser either sees the stored response or is told the request is still running, it never runs it again
+            List<Integer> statuses = List.of(a.get().getStatus(), b.get().getStatus());
+            assertTrue(statuses.contains(201));
+            assertTrue(statuses.stream().allMatch(status -> status == 201 || status == 409));
+            assertEquals(1, executions.get());
+
+            MockHttpServletResponse retry = send(second, "alice", "/api/tasks", key, createTask);
+            assertEquals(201, retry.getStatus());
+            assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+            assertEquals(1, executions.get());
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @Test
+    void retryOnAnotherInstanceIsReplayedFromTheTable() throws Exception {
+        String key = UUID.randomUUID().toString();
+        send(new IdempotencyFilter(idempotencyStore), "alice", "/api/tasks", key, createTask);
+
+        IdempotencyStore otherInstance = new IdempotencyStore(idempotencyRepository, Duration.ofHours(1), Duration.ofMinutes(1), 100);
+        MockHttpServletResponse retry = send(new IdempotencyFilter(otherInstance), "alice", "/api/tasks", key, createTask);
+
+        assertEquals(1, executions.get());
+        assertEquals(201, retry.getStatus());
+        assertEquals("application/json", retry.getContentType());
+        assertEquals("http://localhost/api/tasks/public/1", retry.getHeader(HttpHeaders.LOCATION));
+        assertEquals("\"0\"", retry.getHeader(HttpHeaders.ETAG));
+        assertEquals("{\"execution\":1}", retry.getContentAsString());
+    }
+
+    @Test
+    void cachedResponseExpiresWithItsRow() throws Exception {
+        String key = UUID.randomUUID().toString();
+        IdempotencyStore store = new IdempotencyStore(idempotencyRepository, Duration.ofHours(1), Duration.ofMinutes(1), 100);
+        send(new IdempotencyFilter(store), "alice", "/api/tasks", key, createTask);
+        // stored an hour ago less a second, as if another instance had answered it back then
+        jdbcClient.sql("UPDATE idempotency_keys SET created_at = now() - INTERVAL '59 minutes 59 seconds' "
+                + "WHERE username = ? AND idempotency_key = ?").params("alice", key).update();
+
+        IdempotencyStore otherInstance = new IdempotencyStore(idempotencyRepository, Duration.ofHours(1), Duration.ofMinutes(1), 100);
+        assertTrue(otherInstance.find("alice", key).isPresent());
+        Thread.sleep(1500);
+
+        // the cache keeps it no longer than the table, not another hour from when it was cached
+        assertTrue(otherInstance.find("alice", key).isEmpty());
+    }
+
+    @Test
+    void serverErrorIsNotStored() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(idempotencyStore);
+        String key = UUID.randomUUID().toString();
+        FilterChain failing = (request, response) -> {
+            executions.incrementAndGet();
+            ((HttpServletResponse) response).setStatus(500);
+        };
+
+        send(filter, "alice", "/api/tasks", key, failing);
+        MockHttpServletResponse retry = send(filter, "alice", "/api/tasks", key, createTask);
+
+        assertEquals(2, executions.get());
+        assertEquals(201, retry.getStatus());
+        assertNull(retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+    }
+
+    @Test
+    void keyIsScopedToRequestAndUser() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(idempotencyStore);
+        String key = UUID.randomUUID().toString();
+        send(filter, "alice", "/api/tasks", key, createTask);
+
+        MockHttpServletResponse otherRequest = send(filter, "alice", "/api/tasks/bulk", key, createTask);
+        assertEquals(422, otherRequest.getStatus());
+
+        MockHttpServletResponse otherUser = send(filter, "bob", "/api/tasks", key, createTask);
+        assertEquals(201, otherUser.getStatus());
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void keyIsScopedToRequestBody() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(idempotencyStore);
+        String key = UUID.randomUUID().toString();
+        send(filter, "alice", "/api/tasks", key, "{\"name\":\"first\"}", createTask);
+
+        MockHttpServletResponse otherBody = send(filter, "alice", "/api/tasks", key, "{\"name\":\"second\"}", createTask);
+        assertEquals(422, otherBody.getStatus());
+
+        MockHttpServletResponse sameBody = send(filter, "alice", "/api/tasks", key, "{\"name\":\"first\"}", createTask);
+        assertEquals(201, sameBody.getStatus());
+        assertEquals("true", sameBody.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void heartbeatKeepsLongRequestClaimed() throws Exception {
+        String key = UUID.randomUUID().toString();
+        IdempotencyStore store = new IdempotencyStore(idempotencyRepository, Duration.ofHours(1), Duration.ofMinutes(1), 100);
+        IdempotencyStore otherInstance = new IdempotencyStore(idempotencyRepository, Duration.ofHours(1), Duration.ofMinutes(1), 100);
+        AtomicBoolean claimedElsewhere = new AtomicBoolean();
+        FilterChain longImport = (request, response) -> {
+            // by now the import has been running for longer than abandoned-after
+            jdbcClient.sql("UPDATE idempotency_keys SET created_at = now() - INTERVAL '2 minutes' "
+                    + "WHERE username = ? AND idempotency_key = ?").params("alice", key).update();
+            store.heartbeat();
+            claimedElsewhere.set(otherInstance.claim("alice", key, "POST /api/tasks/import"));
+            createTask.doFilter(request, response);
+        };
+
+        MockHttpServletResponse response = send(new IdempotencyFilter(store), "alice", "/api/tasks/import", key, longImport);
+
+        assertEquals(201, response.getStatus());
+        assertFalse(claimedElsewhere.get());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void responseThatCanNotBeStoredIsStillSent() throws Exception {
+        String key = UUID.randomUUID().toString();
+        IdempotencyRepository failing = new IdempotencyRepository(jdbcClient) {
+            @Override
+            public Optional<Duration> complete(String username, String key, StoredResponse response, Duration ttl) {
+                throw new DataAccessResourceFailureException("connection lost");
+            }
+        };
+        IdempotencyFilter filter = new IdempotencyFilter(new IdempotencyStore(failing, Duration.ofHours(1), Duration.ofMinutes(1), 100));
+
+        MockHttpServletResponse response = send(filter, "alice", "/api/tasks", key, createTask);
+        assertEquals(201, response.getStatus());
+        assertEquals("{\"execution\":1}", response.getContentAsString());
+
+        // the key stays claimed, a retry is not run again before the key counts as abandoned
+        MockHttpServletResponse retry = send(filter, "alice", "/api/tasks", key, createTask);
+        assertEquals(409, retry.getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void invalidKeyIsRejected() throws Exception {
+        IdempotencyFilter filter = new IdempotencyFilter(idempotencyStore);
+
+        assertEquals(400, send(filter, "alice", "/api/tasks", " ", createTask).getStatus());
+        assertEquals(400, send(filter, "alice", "/api/tasks", "k".repeat(256), createTask).getStatus());
+        assertEquals(0, executions.get());
+    }
+}
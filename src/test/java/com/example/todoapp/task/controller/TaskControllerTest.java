@@ -10,8 +10,23 @@ import com.example.todoapp.config.RestTestConfig;
 import com.example.todoapp.config.security.CustomUserDetailsService;
 import com.example.todoapp.config.security.JwtTokenUtil;
 import com.example.todoapp.config.security.SecurityConfig;
+import com.example.todoapp.config.security.VerifiedTokenCache;
 import com.example.todoapp.task.Task;
+import com.example.todoapp.task.TaskCursor;
+import com.example.todoapp.task.TaskDataFormat;
+import com.example.todoapp.task.TaskFilter;
+import com.example.todoapp.task.TaskPage;
+import com.example.todoapp.task.TaskPatch;
+import com.example.todoapp.task.TaskSearchCursor;
+import com.example.todoapp.task.TaskSearchPage;
+import com.example.todoapp.task.TaskSnapshot;
+import com.example.todoapp.task.TaskSort;
+import com.example.todoapp.task.TaskStats;
+import com.example.todoapp.task.TaskVersion;
+import com.example.todoapp.task.TaskView;
 import com.example.todoapp.task.service.TaskService;
+import com.example.todoapp.task.service.TaskVersionConflictException;
+import com.example.todoapp.task.service.TaskValidationException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -21,16 +36,24 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -56,6 +79,8 @@ class TaskControllerTest {
     private CustomUserDetailsService customUserDetailsService;
     @MockitoBean
     private JwtTokenUtil jwtTokenUtil;
+    @MockitoBean
+    private VerifiedTokenCache verifiedTokenCache;
 
     @MockitoBean
     private TaskService taskService;
@@ -66,6 +91,7 @@ class TaskControllerTest {
 
     private Task task;
     private TaskDTO taskDTO;
+    private TaskVersion taskVersion;
 
     @BeforeEach
     void setUp() {
@@ -77,6 +103,7 @@ class TaskControllerTest {
         task.setDeadline(LocalDate.now().plusDays(1));
         task.setCompleted(false);
         task.setUserId(1L);
+        task.setVersion(3L);
 
         taskDTO = new TaskDTO();
         taskDTO.setPublicId(task.getPublicId());
@@ -85,18 +112,29 @@ class TaskControllerTest {
         taskDTO.setDeadline(task.getDeadline());
         taskDTO.setComplete(task.getCompleted());
         taskDTO.setUserName("username");
+
+        taskVersion = new TaskVersion(task.getUserId(), 3L);
+        when(taskService.getTaskListVersion(task.getUserId())).thenReturn(taskVersion);
     }
 
     @Test
     //@WithMockUser(username = "username", roles = {"USER"})
     void createTask_Success() throws Exception {
-        when(taskMapper.fromDTO(taskDTO)).thenReturn(task);
-        doNothing().when(taskService).createTask(task);
+        when(taskMapper.fromDTO(any(TaskDTO.class))).thenReturn(task);
+        when(taskService.createTask(task)).thenReturn(task);
+        when(taskMapper.getUserName()).thenReturn("username");
+        when(taskMapper.toDTO(task, "username")).thenReturn(taskDTO);
 
         mockMvc.perform(post("/api/tasks")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(taskDTO)))
-                .andExpect(status().isCreated());
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.LOCATION, "http://localhost/api/tasks/public/" + task.getPublicId()))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(jsonPath("$.publicId").value(task.getPublicId().toString()));
+
+        // the response needs no extra lookups of the owner
+        verify(taskMapper, never()).toDTO(task);
 
     }
 
@@ -120,6 +158,147 @@ class TaskControllerTest {
     }
 
 
+    @Test
+    void createTasks_Success() throws Exception {
+        Long userId = task.getUserId();
+        UUID createdId = UUID.randomUUID();
+
+        when(taskMapper.getUserId()).thenReturn(userId);
+        when(taskMapper.fromDTO(any(TaskDTO.class), eq(userId))).thenReturn(task);
+        when(taskService.createTasks(List.of(task, task))).thenReturn(List.of(createdId, createdId));
+
+        mockMvc.perform(post("/api/tasks/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(taskDTO, taskDTO))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0]").value(createdId.toString()));
+
+        // the user is looked up once for the whole request
+        verify(taskMapper, times(1)).getUserId();
+        verify(taskMapper, never()).fromDTO(any(TaskDTO.class));
+    }
+
+    @Test
+    void createTasks_ValidationErrors() throws Exception {
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+        when(taskMapper.fromDTO(any(TaskDTO.class), eq(task.getUserId()))).thenReturn(task);
+        when(taskService.createTasks(anyList())).thenThrow(new TaskValidationException(List.of(
+                new TaskValidationException.ItemError(1, "Deadline can not be in the past."))));
+
+        mockMvc.perform(post("/api/tasks/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(taskDTO, taskDTO))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].index").value(1))
+                .andExpect(jsonPath("$[0].message").value("Deadline can not be in the past."));
+    }
+
+    @Test
+    void markTasksAsCompleted_Success() throws Exception {
+        UUID other = UUID.randomUUID();
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+        when(taskService.markTasksAsCompleted(task.getUserId(), List.of(task.getPublicId(), other)))
+                .thenReturn(List.of(task.getPublicId()));
+
+        mockMvc.perform(post("/api/tasks/bulk/complete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(task.getPublicId(), other))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0]").value(task.getPublicId().toString()));
+    }
+
+    @Test
+    void deleteTasks_Success() throws Exception {
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+        when(taskService.deleteTasks(task.getUserId(), List.of(task.getPublicId())))
+                .thenReturn(List.of(task.getPublicId()));
+
+        mockMvc.perform(post("/api/tasks/bulk/delete")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(task.getPublicId()))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0]").value(task.getPublicId().toString()));
+    }
+
+    @Test
+    void patchTask_Success() throws Exception {
+        TaskPatch patch = new TaskPatch();
+        patch.setCompleted(true);
+        taskDTO.setComplete(true);
+
+        when(taskMapper.toPatch(any())).thenReturn(patch);
+        when(taskService.patchTask(task.getPublicId(), patch, null)).thenReturn(task);
+        when(taskMapper.toDTO(task)).thenReturn(taskDTO);
+
+        mockMvc.perform(patch("/api/tasks/public/" + task.getPublicId())
+                        .contentType(TaskController.MERGE_PATCH_JSON_VALUE)
+                        .content("{\"complete\": true}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(jsonPath("$.complete").value(true));
+
+        verify(taskMapper).toPatch(argThat(node -> node.get("complete").booleanValue()));
+    }
+
+    @Test
+    void patchTask_NotFound() throws Exception {
+        when(taskMapper.toPatch(any())).thenReturn(new TaskPatch());
+        when(taskService.patchTask(eq(task.getPublicId()), any(TaskPatch.class), isNull()))
+                .thenThrow(new IllegalArgumentException("Task not found."));
+
+        mockMvc.perform(patch("/api/tasks/public/" + task.getPublicId())
+                        .contentType(TaskController.MERGE_PATCH_JSON_VALUE)
+                        .content("{\"name\": \"other\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Task not found."));
+    }
+
+    @Test
+    void patchTask_IfMatch() throws Exception {
+        when(taskMapper.toPatch(any())).thenReturn(new TaskPatch());
+        when(taskService.patchTask(eq(task.getPublicId()), any(TaskPatch.class), eq(2L)))
+                .thenThrow(new TaskVersionConflictException());
+
+        mockMvc.perform(patch("/api/tasks/public/" + task.getPublicId())
+                        .contentType(TaskController.MERGE_PATCH_JSON_VALUE)
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .content("{\"name\": \"other\"}"))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void updateTask_IfMatchOverridesBodyVersion() throws Exception {
+        taskDTO.setVersion(1L);
+        when(taskMapper.fromDTO(any(TaskDTO.class))).thenReturn(task);
+        when(taskService.updateTask(task)).thenReturn(task);
+
+        mockMvc.perform(put("/api/tasks/update")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .content(objectMapper.writeValueAsString(taskDTO)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+
+        verify(taskService).updateTask(argThat(written -> written.getVersion() == 3L));
+    }
+
+    @Test
+    void updateTask_WeakIfMatchNeverMatches() throws Exception {
+        when(taskMapper.fromDTO(any(TaskDTO.class))).thenReturn(task);
+
+        mockMvc.perform(put("/api/tasks/update")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                        .content(objectMapper.writeValueAsString(taskDTO)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(content().string("Task was changed in the meantime."));
+
+        verify(taskService, never()).updateTask(any());
+    }
+
     @Test
     void getTaskByIdTest_Success() throws Exception {
         UUID publicTaskId = task.getPublicId();
@@ -136,7 +315,11 @@ class TaskControllerTest {
                 .andExpect(jsonPath("$.priority").value(taskDTO.getPriority()))
                 .andExpect(jsonPath("$.complete").value(taskDTO.getComplete()))
                 .andExpect(jsonPath("$.userName").value(taskDTO.getUserName()))
-                .andExpect(jsonPath("$.deadline").value(taskDTO.getDeadline().toString()));
+                .andExpect(jsonPath("$.deadline").value(taskDTO.getDeadline().toString()))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+
+        // without a conditional header the version comes with the task
+        verify(taskService, never()).getTaskVersion(any());
     }
 
     @Test
@@ -165,9 +348,8 @@ class TaskControllerTest {
         List<Task> taskList = List.of(task, task2);
 
         when(taskMapper.getUserId()).thenReturn(task.getUserId());
-        when(taskService.getTasksForUser(userId)).thenReturn(taskList);
-        when(taskMapper.toDTO(task)).thenReturn(taskDTO);
-        when(taskMapper.toDTO(task2)).thenReturn(taskDTO2);
+        when(taskService.getTasksForUser(taskVersion, TaskView.FULL, false)).thenReturn(new TaskSnapshot(taskVersion, taskList));
+        when(taskMapper.toDTOs(taskList)).thenReturn(List.of(taskDTO, taskDTO2));
 
         mockMvc.perform(get("/api/tasks/my-tasks"))
                 .andExpect(status().isOk())
@@ -184,8 +366,8 @@ class TaskControllerTest {
         List<Task> taskList = new ArrayList<>();
 
         when(taskMapper.getUserId()).thenReturn(userId);
-        when(taskService.getTasksForUser(userId)).thenReturn(taskList);
-        when(taskMapper.toDTO(any(Task.class))).thenReturn(taskDTO);
+        when(taskService.getTasksForUser(taskVersion, TaskView.FULL, false)).thenReturn(new TaskSnapshot(taskVersion, taskList));
+        when(taskMapper.toDTOs(taskList)).thenReturn(List.of());
 
         mockMvc.perform(get("/api/tasks/my-tasks"))
                 .andExpect(status().isOk())
@@ -193,4 +375,361 @@ class TaskControllerTest {
                 .andExpect(jsonPath("$.length()").value(0));
     }
 
+    @Test
+    void getMyTasks_IncludeArchived() throws Exception {
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+        when(taskService.getTasksForUser(taskVersion, TaskView.FULL, true)).thenReturn(new TaskSnapshot(taskVersion, List.of(task)));
+        when(taskMapper.toDTOs(List.of(task))).thenReturn(List.of(taskDTO));
+
+        mockMvc.perform(get("/api/tasks/my-tasks").param("includeArchived", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+
+        verify(taskService, never()).getTasksForUser(taskVersion, TaskView.FULL, false);
+    }
+
+    @Test
+    void getMyTasks_IncludeArchivedNotPaged() throws Exception {
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+
+        mockMvc.perform(get("/api/tasks/my-tasks").param("includeArchived", "true").param("limit", "10"))
+                .andExpect(status().isBadRequest());
+
+        verify(taskService, never()).getTaskPageForUser(any(), any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void getMyTasks_Paged() throws Exception {
+        Long userId = task.getUserId();
+        TaskCursor next = TaskCursor.after(task, TaskSort.DEADLINE);
+        TaskPage page = new TaskPage(List.of(task), next);
+
+        when(taskMapper.getUserId()).thenReturn(userId);
+        when(taskService.getTaskPageForUser(eq(userId), any(TaskFilter.class), isNull(), eq(1), eq(TaskView.FULL))).thenReturn(page);
+        when(taskMapper.toDTOs(page.getTasks())).thenReturn(List.of(taskDTO));
+
+        mockMvc.perform(get("/api/tasks/my-tasks").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(TaskController.NEXT_CURSOR_HEADER, next.encode()))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value(taskDTO.getName()));
+    }
+
+    @Test
+    void getMyTasks_Paged_LastPage() throws Exception {
+        Long userId = task.getUserId();
+        TaskCursor cursor = new TaskCursor(TaskSort.DEADLINE, task.getDeadline(), 7L);
+        TaskPage page = new TaskPage(List.of(task), null);
+
+        when(taskMapper.getUserId()).thenReturn(userId);
+        when(taskService.getTaskPageForUser(eq(userId), any(TaskFilter.class), any(TaskCursor.class), eq(50), eq(TaskView.FULL))).thenReturn(page);
+        when(taskMapper.toDTOs(page.getTasks())).thenReturn(List.of(taskDTO));
+
+        mockMvc.perform(get("/api/tasks/my-tasks").param("cursor", cursor.encode()))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(TaskController.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void getMyTasks_Filtered() throws Exception {
+        Long userId = task.getUserId();
+        TaskPage page = new TaskPage(List.of(task), null);
+
+        when(taskMapper.getUserId()).thenReturn(userId);
+        when(taskService.getTaskPageForUser(eq(userId), any(TaskFilter.class), isNull(), eq(50), eq(TaskView.FULL))).thenReturn(page);
+        when(taskMapper.toDTOs(page.getTasks())).thenReturn(List.of(taskDTO));
+
+        mockMvc.perform(get("/api/tasks/my-tasks")
+                        .param("limit", "50")
+                        .param("completed", "false")
+                        .param("minPriority", "2")
+                        .param("dueTo", "2030-01-31")
+                        .param("sort", "priority"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+
+        verify(taskService).getTaskPageForUser(eq(userId), argThat(filter ->
+                Boolean.FALSE.equals(filter.getCompleted())
+                        && filter.getMinPriority() == 2
+                        && filter.getMaxPriority() == null
+                        && LocalDate.of(2030, 1, 31).equals(filter.getDueTo())
+                        && filter.getSort() == TaskSort.PRIORITY), isNull(), eq(50), eq(TaskView.FULL));
+    }
+
+    @Test
+    void getMyTasks_FilteredWithoutLimit() throws Exception {
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+
+        mockMvc.perform(get("/api/tasks/my-tasks").param("completed", "false"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Filtered or sorted listings are paged, a limit is required."));
+
+        verify(taskService, never()).getTaskPageForUser(any(), any(), any(), anyInt(), any());
+        verify(taskService, never()).getTasksForUser(any(), any(), anyBoolean());
+    }
+
+    @Test
+    void getMyTasks_Summary() throws Exception {
+        Long userId = task.getUserId();
+        TaskSummaryDTO summaryDTO = new TaskSummaryDTO();
+        summaryDTO.setPublicId(taskDTO.getPublicId());
+        summaryDTO.setName(taskDTO.getName());
+        TaskPage page = new TaskPage(List.of(task), null);
+
+        when(taskMapper.getUserId()).thenReturn(userId);
+        when(taskService.getTaskPageForUser(eq(userId), any(TaskFilter.class), isNull(), eq(50), eq(TaskView.SUMMARY))).thenReturn(page);
+        when(taskMapper.toSummaryDTOs(page.getTasks())).thenReturn(List.of(summaryDTO));
+
+        mockMvc.perform(get("/api/tasks/my-tasks").param("view", "summary").param("sort", "deadline").param("limit", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value(taskDTO.getName()))
+                .andExpect(jsonPath("$[0].description").doesNotExist());
+    }
+
+    @Test
+    void getMyTasks_UnpagedSummary() throws Exception {
+        TaskSummaryDTO summaryDTO = new TaskSummaryDTO();
+        summaryDTO.setName(taskDTO.getName());
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+        when(taskService.getTasksForUser(taskVersion, TaskView.SUMMARY, false)).thenReturn(new TaskSnapshot(taskVersion, List.of(task)));
+        when(taskMapper.toSummaryDTOs(List.of(task))).thenReturn(List.of(summaryDTO));
+
+        mockMvc.perform(get("/api/tasks/my-tasks").param("view", "summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value(taskDTO.getName()))
+                .andExpect(jsonPath("$[0].description").doesNotExist());
+
+        verify(taskService, never()).getTasksForUser(any(), eq(TaskView.FULL), anyBoolean());
+    }
+
+    @Test
+    void getMyTasks_InvalidView() throws Exception {
+        mockMvc.perform(get("/api/tasks/my-tasks").param("view", "compact"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Unknown view. Use full or summary."));
+    }
+
+    @Test
+    void getMyTasks_Filtered_InvalidSort() throws Exception {
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+
+        mockMvc.perform(get("/api/tasks/my-tasks").param("sort", "color"))
+                .andExpect(status().isBadRequest());
+
+        verify(taskService, never()).getTaskPageForUser(any(), any(), any(), anyInt(), any());
+    }
+
+    @Test
+    void getMyTasks_InvalidCursor() throws Exception {
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+
+        mockMvc.perform(get("/api/tasks/my-tasks").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid cursor."));
+    }
+
+    @Test
+    void streamMyTasks_Success() throws Exception {
+        Long userId = task.getUserId();
+
+        when(taskMapper.getUserId()).thenReturn(userId);
+        when(taskMapper.getUserNameFromUserId(userId)).thenReturn("username");
+        when(taskMapper.toDTO(task, "username")).thenReturn(taskDTO);
+        doAnswer(invocation -> {
+            Consumer<Task> consumer = invocation.getArgument(2);
+            consumer.accept(task);
+            consumer.accept(task);
+            return null;
+        }).when(taskService).streamTasksForUser(eq(userId), eq(TaskView.FULL), any());
+
+        MvcResult result = mockMvc.perform(get("/api/tasks/my-tasks/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String line = objectMapper.writeValueAsString(taskDTO) + "\n";
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(line + line));
+    }
+
+    @Test
+    void exportMyTasks_Csv() throws Exception {
+        Long userId = task.getUserId();
+
+        when(taskMapper.getUserId()).thenReturn(userId);
+        doAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            out.write("publicId,name\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(taskService).exportTasksForUser(eq(userId), eq(TaskDataFormat.CSV), any());
+
+        MvcResult result = mockMvc.perform(get("/api/tasks/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"tasks.csv\""))
+                .andExpect(content().string("publicId,name\n"));
+    }
+
+    @Test
+    void exportMyTasks_UnknownFormat() throws Exception {
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+
+        mockMvc.perform(get("/api/tasks/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verify(taskService, never()).exportTasksForUser(any(), any(), any());
+    }
+
+    @Test
+    void importTasks_Json() throws Exception {
+        Long userId = task.getUserId();
+        String lines = "{\"name\":\"a\"}\n{\"name\":\"b\"}\n";
+
+        when(taskMapper.getUserId()).thenReturn(userId);
+        when(taskService.importTasksForUser(eq(userId), eq(TaskDataFormat.JSON), any(InputStream.class))).thenAnswer(invocation -> {
+            InputStream in = invocation.getArgument(2);
+            assertEquals(lines, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            return 2L;
+        });
+
+        mockMvc.perform(post("/api/tasks/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(lines))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.imported").value(2));
+    }
+
+    @Test
+    void importTasks_InvalidData() throws Exception {
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+        when(taskService.importTasksForUser(any(), eq(TaskDataFormat.CSV), any(InputStream.class)))
+                .thenThrow(new IllegalArgumentException("Invalid task data: invalid input syntax for type date"));
+
+        mockMvc.perform(post("/api/tasks/import")
+                        .contentType("text/csv")
+                        .content("publicId,name,description,deadline,priority,complete\n,a,,soon,1,false\n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void searchMyTasks_Success() throws Exception {
+        Long userId = task.getUserId();
+        TaskSearchCursor next = new TaskSearchCursor(0.6f, 7L);
+        TaskSearchPage page = new TaskSearchPage(List.of(task), next);
+
+        when(taskMapper.getUserId()).thenReturn(userId);
+        when(taskService.searchTasksForUser(eq(userId), eq("milk"), isNull(), eq(1), eq(TaskView.FULL))).thenReturn(page);
+        when(taskMapper.toDTOs(page.getTasks())).thenReturn(List.of(taskDTO));
+
+        mockMvc.perform(get("/api/tasks/search").param("q", "milk").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(TaskController.NEXT_CURSOR_HEADER, next.encode()))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value(taskDTO.getName()));
+    }
+
+    @Test
+    void searchMyTasks_NextPage() throws Exception {
+        Long userId = task.getUserId();
+        TaskSearchCursor cursor = new TaskSearchCursor(0.6f, 7L);
+
+        when(taskMapper.getUserId()).thenReturn(userId);
+        when(taskService.searchTasksForUser(eq(userId), eq("milk"), argThat(after ->
+                after.getRank() == 0.6f && after.getId() == 7L), eq(50), eq(TaskView.FULL)))
+                .thenReturn(new TaskSearchPage(List.of(), null));
+        when(taskMapper.toDTOs(List.of())).thenReturn(List.of());
+
+        mockMvc.perform(get("/api/tasks/search").param("q", "milk").param("cursor", cursor.encode()))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(TaskController.NEXT_CURSOR_HEADER))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void getMyStats_Success() throws Exception {
+        TaskStats stats = new TaskStats();
+        stats.add(2, false, 3);
+        stats.add(5, true, 1);
+        stats.setOverdue(2);
+
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+        when(taskService.getStatsForUser(task.getUserId())).thenReturn(stats);
+
+        mockMvc.perform(get("/api/tasks/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(4))
+                .andExpect(jsonPath("$.completed").value(1))
+                .andExpect(jsonPath("$.overdue").value(2))
+                .andExpect(jsonPath("$.byPriority.2").value(3))
+                .andExpect(jsonPath("$.byPriority.1").value(0));
+    }
+
+    @Test
+    void getMyTasks_ETag() throws Exception {
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+        when(taskService.getTasksForUser(taskVersion, TaskView.FULL, false)).thenReturn(new TaskSnapshot(taskVersion, List.of(task)));
+        when(taskMapper.toDTOs(List.of(task))).thenReturn(List.of(taskDTO));
+
+        mockMvc.perform(get("/api/tasks/my-tasks"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, taskVersion.toETag()));
+    }
+
+    @Test
+    void getMyTasks_ETagOfSnapshot() throws Exception {
+        // a write between the version check and the read moved the list on, the tag has to describe the body
+        TaskVersion newer = new TaskVersion(task.getUserId(), 4L);
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+        when(taskService.getTasksForUser(taskVersion, TaskView.FULL, false)).thenReturn(new TaskSnapshot(newer, List.of(task)));
+        when(taskMapper.toDTOs(List.of(task))).thenReturn(List.of(taskDTO));
+
+        mockMvc.perform(get("/api/tasks/my-tasks"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, newer.toETag()));
+    }
+
+    @Test
+    void getMyTasks_NotModified() throws Exception {
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+
+        mockMvc.perform(get("/api/tasks/my-tasks").header(HttpHeaders.IF_NONE_MATCH, taskVersion.toETag()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, taskVersion.toETag()))
+                .andExpect(content().string(""));
+
+        verify(taskService, never()).getTasksForUser(any(), any(), anyBoolean());
+        verify(taskMapper, never()).toDTOs(any());
+    }
+
+    @Test
+    void getMyTasks_ChangedSinceETag() throws Exception {
+        when(taskMapper.getUserId()).thenReturn(task.getUserId());
+        when(taskService.getTasksForUser(taskVersion, TaskView.FULL, false)).thenReturn(new TaskSnapshot(taskVersion, List.of(task)));
+        when(taskMapper.toDTOs(List.of(task))).thenReturn(List.of(taskDTO));
+
+        String staleETag = new TaskVersion(task.getUserId(), 2L).toETag();
+        mockMvc.perform(get("/api/tasks/my-tasks").header(HttpHeaders.IF_NONE_MATCH, staleETag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, taskVersion.toETag()))
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void getTaskById_NotModified() throws Exception {
+        UUID publicTaskId = task.getPublicId();
+        when(taskService.getTaskVersion(publicTaskId)).thenReturn(Optional.of(3L));
+
+        mockMvc.perform(get("/api/tasks/public/{public_id}", publicTaskId.toString())
+                        .header(HttpHeaders.IF_NONE_MATCH, "W/\"3\""))
+                .andExpect(status().isNotModified());
+
+        verify(taskService, never()).getTaskByPublicId(any());
+    }
+
 }
\ No newline at end of file
@@ -5,23 +5,35 @@
 
 package com.example.todoapp.task.controller;
 
+import com.example.todoapp.config.security.AuthenticatedUser;
 import com.example.todoapp.task.Task;
+import com.example.todoapp.task.TaskPatch;
 import com.example.todoapp.user.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextImpl;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -43,6 +55,20 @@ public class TaskMapperTest {
         SecurityContextHolder.setContext(securityContext);
     }
 
+    @Test
+    void getUserId_FromTokenPrincipal() {
+        SecurityContext previous = SecurityContextHolder.getContext();
+        AuthenticatedUser principal = new AuthenticatedUser(9L, "testuser", null, AuthorityUtils.createAuthorityList("ROLE_USER"));
+        SecurityContextHolder.setContext(new SecurityContextImpl(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities())));
+        try {
+            assertEquals(9L, taskMapper.getUserId());
+            verify(userService, never()).findUserIdByUserName("testuser");
+        } finally {
+            SecurityContextHolder.setContext(previous);
+        }
+    }
+
     @Test
     void fromDTOTest() {
         TaskDTO taskDTO = new TaskDTO();
@@ -92,4 +118,68 @@ public class TaskMapperTest {
         assertEquals(task.getPriority(), taskDTO.getPriority());
         assertEquals(task.getCompleted(), taskDTO.getComplete());
     }
+
+    @Test
+    void toDTOsTest() {
+        Task task1 = new Task(1L, UUID.randomUUID(), "name1", "description", LocalDate.of(2020, 10, 10), 2, true, 42L);
+        Task task2 = new Task(2L, UUID.randomUUID(), "name2", "description", LocalDate.of(2020, 10, 11), 3, false, 42L);
+        Task task3 = new Task(3L, UUID.randomUUID(), "name3", "description", LocalDate.of(2020, 10, 12), 4, false, 43L);
+
+        when(userService.findUserNamesByUserIds(Set.of(42L, 43L)))
+                .thenReturn(Map.of(42L, "testuser", 43L, "otheruser"));
+
+        List<TaskDTO> taskDTOs = taskMapper.toDTOs(List.of(task1, task2, task3));
+
+        assertEquals(3, taskDTOs.size());
+        assertEquals(task1.getPublicId(), taskDTOs.get(0).getPublicId());
+        assertEquals("testuser", taskDTOs.get(0).getUserName());
+        assertEquals("testuser", taskDTOs.get(1).getUserName());
+        assertEquals("otheruser", taskDTOs.get(2).getUserName());
+        // owner names are resolved in bulk and never per task
+        verify(userService, never()).findUserNameByUserId(anyLong());
+    }
+
+    @Test
+    void toSummaryDTOsTest() {
+        Task task = new Task(1L, UUID.randomUUID(), "name", null, LocalDate.of(2020, 10, 10), 2, true, 42L);
+
+        when(userService.findUserNamesByUserIds(Set.of(42L)))
+                .thenReturn(Map.of(42L, "testuser"));
+
+        List<TaskSummaryDTO> summaries = taskMapper.toSummaryDTOs(List.of(task));
+
+        assertEquals(1, summaries.size());
+        assertFalse(summaries.get(0) instanceof TaskDTO);
+        assertEquals(task.getPublicId(), summaries.get(0).getPublicId());
+        assertEquals(task.getName(), summaries.get(0).getName());
+        assertEquals("testuser", summaries.get(0).getUserName());
+    }
+
+    @Test
+    void toPatchTest() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        TaskPatch patch = taskMapper.toPatch(objectMapper.readTree(
+                "{\"name\": \"renamed\", \"description\": null, \"deadline\": \"2030-01-31\", \"complete\": true}"));
+
+        assertEquals(List.of(TaskPatch.NAME, TaskPatch.DESCRIPTION, TaskPatch.DEADLINE, TaskPatch.COMPLETED),
+                List.copyOf(patch.getChanges().keySet()));
+        assertEquals("renamed", patch.getName());
+        assertNull(patch.getChanges().get(TaskPatch.DESCRIPTION));
+        assertEquals(LocalDate.of(2030, 1, 31), patch.getDeadline());
+        assertFalse(patch.isSet(TaskPatch.PRIORITY));
+    }
+
+    @Test
+    void toPatchTest_Invalid() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        assertEquals("Field can not be patched: userName.", assertThrows(IllegalArgumentException.class, () ->
+                taskMapper.toPatch(objectMapper.readTree("{\"userName\": \"other\"}"))).getMessage());
+        assertEquals("Invalid value for priority.", assertThrows(IllegalArgumentException.class, () ->
+                taskMapper.toPatch(objectMapper.readTree("{\"priority\": \"high\"}"))).getMessage());
+        assertEquals("Invalid value for deadline.", assertThrows(IllegalArgumentException.class, () ->
+                taskMapper.toPatch(objectMapper.readTree("{\"deadline\": \"tomorrow\"}"))).getMessage());
+        assertThrows(IllegalArgumentException.class, () -> taskMapper.toPatch(objectMapper.readTree("[]")));
+    }
 }
@@ -6,22 +6,45 @@
 package com.example.todoapp.task.repository;
 
 import com.example.todoapp.task.Task;
+import com.example.todoapp.task.TaskCursor;
+import com.example.todoapp.task.TaskDataFormat;
+import com.example.todoapp.task.TaskFilter;
+import com.example.todoapp.task.TaskPage;
+import com.example.todoapp.task.TaskPatch;
+import com.example.todoapp.task.TaskSearchPage;
+import com.example.todoapp.task.TaskSnapshot;
+import com.example.todoapp.task.TaskSort;
+import com.example.todoapp.task.TaskStats;
+import com.example.todoapp.task.TaskView;
 import com.example.todoapp.user.User;
 import com.example.todoapp.user.repository.UserRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.simple.JdbcClient;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -49,6 +72,10 @@ public class TaskRepositoryTest {
     private TaskRepository taskRepository;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private JdbcClient jdbcClient;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
 
     @Test
     void createTest() {
@@ -60,8 +87,14 @@ public class TaskRepositoryTest {
 
         LocalDate localDate = LocalDate.of(2020, 6, 7);
         Task task = new Task(null, UUID.randomUUID(), "task", "description", localDate, 5, true, userId);
-        int inserted = taskRepository.create(task);
-        assertEquals(1, inserted);
+        Task created = taskRepository.create(task);
+        // generated columns come back with the insert
+        assertNotNull(created.getId());
+        assertNotNull(created.getPublicId());
+        assertEquals(0L, created.getVersion());
+        assertEquals(task.getName(), created.getName());
+        assertEquals(userId, created.getUserId());
+        assertEquals(Optional.of(created.getPublicId()), taskRepository.findById(created.getId()).map(Task::getPublicId));
     }
 
     @Test
@@ -104,6 +137,370 @@ public class TaskRepositoryTest {
 
     }
 
+    @Test
+    void findSnapshotTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+
+        taskRepository.create(new Task(null, null, "task1", "description", LocalDate.of(2030, 6, 7), 5, false, userId));
+        taskRepository.create(new Task(null, null, "task2", "description", LocalDate.of(2030, 6, 8), 5, false, userId));
+
+        TaskSnapshot snapshot = taskRepository.findSnapshot(userId, TaskView.FULL, false);
+        assertEquals(userId, snapshot.getVersion().getUserId());
+        assertEquals(userRepository.findTaskVersion(userId).orElseThrow(), snapshot.getVersion().getVersion());
+        assertEquals(List.of("task2", "task1"), snapshot.getTasks().stream().map(Task::getName).toList());
+        assertEquals("description", snapshot.getTasks().getFirst().getDescription());
+
+        // the summary leaves the description out of the query itself
+        TaskSnapshot summary = taskRepository.findSnapshot(userId, TaskView.SUMMARY, false);
+        assertEquals(2, summary.getTasks().size());
+        assertNull(summary.getTasks().getFirst().getDescription());
+    }
+
+    @Test
+    void createAllTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+
+        List<UUID> publicIds = taskRepository.createAll(List.of(
+                new Task(null, null, "task1", "description", LocalDate.of(2030, 6, 7), 5, false, userId),
+                new Task(null, null, "task2", null, LocalDate.of(2030, 6, 8), 2, true, userId)));
+
+        assertEquals(2, publicIds.size());
+        Task first = taskRepository.findByPublicId(publicIds.get(0)).orElseThrow();
+        assertEquals("task1", first.getName());
+        assertEquals(LocalDate.of(2030, 6, 7), first.getDeadline());
+        Task second = taskRepository.findByPublicId(publicIds.get(1)).orElseThrow();
+        assertEquals("task2", second.getName());
+        assertNull(second.getDescription());
+        assertTrue(second.getCompleted());
+        assertEquals(2, taskRepository.findStats(userId, LocalDate.of(2030, 1, 1)).getTotal());
+    }
+
+    @Test
+    void createAllRowsTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+
+        List<Task> rows = taskRepository.createAllRows(List.of(
+                new Task(null, null, "task1", "description", LocalDate.of(2030, 6, 7), 5, false, userId),
+                new Task(null, null, "task2", null, LocalDate.of(2030, 6, 8), 2, true, userId),
+                new Task(null, null, "task3", "description", LocalDate.of(2030, 6, 9), 1, false, userId)));
+
+        // rows come back in the order of the given tasks, complete with their generated columns
+        assertEquals(List.of("task1", "task2", "task3"), rows.stream().map(Task::getName).toList());
+        for (Task row : rows) {
+            assertNotNull(row.getId());
+            assertEquals(row.getName(), taskRepository.findByPublicId(row.getPublicId()).orElseThrow().getName());
+        }
+    }
+
+    @Test
+    void completeAllAndDeleteAllTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+        User other = new User(null, "other", "pswd");
+        userRepository.create(other);
+        long otherId = userRepository.findByUsername(other.getUsername()).orElseThrow().getId();
+
+        List<UUID> own = taskRepository.createAll(List.of(
+                new Task(null, null, "open", "description", LocalDate.of(2030, 6, 7), 5, false, userId),
+                new Task(null, null, "done", "description", LocalDate.of(2030, 6, 7), 5, true, userId)));
+        List<UUID> foreign = taskRepository.createAll(List.of(
+                new Task(null, null, "foreign", "description", LocalDate.of(2030, 6, 7), 5, false, otherId)));
+        List<UUID> all = List.of(own.get(0), own.get(1), foreign.get(0), UUID.randomUUID());
+
+        // only the open task of the caller changes, both of the callers tasks are reported as completed, the foreign one is not
+        long version = userRepository.findTaskVersion(userId).orElseThrow();
+        List<UUID> completed = taskRepository.completeAll(userId, all);
+        assertEquals(2, completed.size());
+        assertTrue(completed.containsAll(own));
+        assertTrue(taskRepository.findByPublicId(own.get(0)).orElseThrow().getCompleted());
+        // completing them again reports both without writing anything
+        assertEquals(2, taskRepository.completeAll(userId, own).size());
+        assertEquals(Optional.of(version + 1), userRepository.findTaskVersion(userId));
+        assertFalse(taskRepository.findByPublicId(foreign.get(0)).orElseThrow().getCompleted());
+
+        List<UUID> deleted = taskRepository.deleteAll(userId, all);
+        assertEquals(2, deleted.size());
+        assertTrue(deleted.containsAll(own));
+        assertTrue(taskRepository.findSet(userId).isEmpty());
+        assertEquals(1, taskRepository.findSet(otherId).size());
+    }
+
+    @Test
+    void findPageTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        Optional<User> newOptional = userRepository.findByUsername(user.getUsername());
+        assertFalse(newOptional.isEmpty());
+        long userId = newOptional.get().getId();
+
+        // two tasks share a deadline so the id has to break the tie between pages
+        taskRepository.create(new Task(null, UUID.randomUUID(), "task1", "description", LocalDate.of(2020, 6, 7), 5, true, userId));
+        taskRepository.create(new Task(null, UUID.randomUUID(), "task2", "description", LocalDate.of(2020, 6, 8), 5, true, userId));
+        taskRepository.create(new Task(null, UUID.randomUUID(), "task3", "description", LocalDate.of(2020, 6, 8), 5, true, userId));
+
+        TaskPage first = taskRepository.findPage(userId, new TaskFilter(), null, 2, TaskView.FULL);
+        assertEquals(2, first.getTasks().size());
+        assertTrue(first.hasNext());
+        assertEquals("task3", first.getTasks().get(0).getName());
+        assertEquals("task2", first.getTasks().get(1).getName());
+
+        TaskPage second = taskRepository.findPage(userId, new TaskFilter(), first.getNext(), 2, TaskView.FULL);
+        assertEquals(1, second.getTasks().size());
+        assertFalse(second.hasNext());
+        assertEquals("task1", second.getTasks().getFirst().getName());
+    }
+
+    @Test
+    void findPageFilteredTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+
+        taskRepository.create(new Task(null, UUID.randomUUID(), "open1", "description", LocalDate.of(2030, 6, 7), 1, false, userId));
+        taskRepository.create(new Task(null, UUID.randomUUID(), "open2", "description", LocalDate.of(2030, 6, 8), 4, false, userId));
+        taskRepository.create(new Task(null, UUID.randomUUID(), "open3", "description", LocalDate.of(2030, 6, 20), 3, false, userId));
+        taskRepository.create(new Task(null, UUID.randomUUID(), "done", "description", LocalDate.of(2030, 6, 8), 5, true, userId));
+
+        TaskFilter filter = new TaskFilter();
+        filter.setCompleted(false);
+        filter.setDueFrom(LocalDate.of(2030, 6, 1));
+        filter.setDueTo(LocalDate.of(2030, 6, 10));
+        filter.setSort(TaskSort.PRIORITY);
+
+        TaskPage first = taskRepository.findPage(userId, filter, null, 1, TaskView.FULL);
+        assertEquals(1, first.getTasks().size());
+        assertEquals("open2", first.getTasks().getFirst().getName());
+        assertTrue(first.hasNext());
+
+        TaskPage second = taskRepository.findPage(userId, filter, first.getNext(), 1, TaskView.FULL);
+        assertEquals(1, second.getTasks().size());
+        assertEquals("open1", second.getTasks().getFirst().getName());
+        assertFalse(second.hasNext());
+
+        TaskFilter priorityFilter = new TaskFilter();
+        priorityFilter.setMinPriority(3);
+        priorityFilter.setMaxPriority(4);
+        priorityFilter.setSort(TaskSort.NAME);
+        List<Task> byName = taskRepository.findPage(userId, priorityFilter, null, 10, TaskView.FULL).getTasks();
+        assertEquals(List.of("open2", "open3"), byName.stream().map(Task::getName).toList());
+    }
+
+    @Test
+    void findPageNullPriorityTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+
+        taskRepository.create(new Task(null, null, "high", "description", LocalDate.of(2030, 6, 7), 5, false, userId));
+        taskRepository.create(new Task(null, null, "none1", "description", LocalDate.of(2030, 6, 7), null, false, userId));
+        taskRepository.create(new Task(null, null, "low", "description", LocalDate.of(2030, 6, 7), 1, false, userId));
+        taskRepository.create(new Task(null, null, "none2", "description", LocalDate.of(2030, 6, 7), null, false, userId));
+
+        TaskFilter filter = new TaskFilter();
+        filter.setSort(TaskSort.PRIORITY);
+        List<String> names = new ArrayList<>();
+        TaskPage page = taskRepository.findPage(userId, filter, null, 1, TaskView.FULL);
+        names.addAll(page.getTasks().stream().map(Task::getName).toList());
+        while (page.hasNext()) {
+            // every cursor goes through its encoded form, like it would between requests
+            page = taskRepository.findPage(userId, filter, TaskCursor.decode(page.getNext().encode()), 1, TaskView.FULL);
+            names.addAll(page.getTasks().stream().map(Task::getName).toList());
+        }
+
+        // tasks without a priority come last, newest id first, and none is skipped or repeated
+        assertEquals(List.of("high", "low", "none2", "none1"), names);
+        assertNull(taskRepository.findSet(userId).stream().filter(task -> task.getName().equals("none1")).findFirst().orElseThrow().getPriority());
+    }
+
+    @Test
+    void streamSetTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+
+        taskRepository.create(new Task(null, UUID.randomUUID(), "task1", "description", LocalDate.of(2020, 6, 7), 5, true, userId));
+        taskRepository.create(new Task(null, UUID.randomUUID(), "task2", "description", LocalDate.of(2020, 6, 8), 5, true, userId));
+
+        List<Task> streamed = new ArrayList<>();
+        taskRepository.streamSet(userId, TaskView.FULL, streamed::add);
+
+        assertEquals(2, streamed.size());
+        assertEquals("task2", streamed.get(0).getName());
+        assertEquals("task1", streamed.get(1).getName());
+    }
+
+    @Test
+    void archiveCompletedTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+
+        taskRepository.createAll(List.of(
+                new Task(null, null, "old done", "description", LocalDate.of(2020, 6, 7), 5, true, userId),
+                new Task(null, null, "older done", "description", LocalDate.of(2020, 6, 6), 4, true, userId),
+                new Task(null, null, "old open", "description", LocalDate.of(2020, 6, 7), 5, false, userId),
+                new Task(null, null, "recent done", "description", LocalDate.of(2030, 6, 7), 5, true, userId)));
+
+        // oldest deadline first, one batch at a time
+        List<Task> first = taskRepository.archiveCompleted(LocalDate.of(2021, 1, 1), 1);
+        assertEquals(List.of("older done"), first.stream().map(Task::getName).toList());
+        List<Task> second = taskRepository.archiveCompleted(LocalDate.of(2021, 1, 1), 1);
+        assertEquals(List.of("old done"), second.stream().map(Task::getName).toList());
+        assertTrue(taskRepository.archiveCompleted(LocalDate.of(2021, 1, 1), 1).isEmpty());
+
+        assertEquals(List.of("recent done", "old open"), taskRepository.findSet(userId).stream().map(Task::getName).toList());
+        List<Task> all = taskRepository.findSetIncludingArchived(userId);
+        assertEquals(4, all.size());
+        assertTrue(all.stream().anyMatch(task -> task.getPublicId().equals(first.getFirst().getPublicId())));
+        // archived tasks still count
+        TaskStats stats = taskRepository.findStats(userId, LocalDate.of(2025, 1, 1));
+        assertEquals(4, stats.getTotal());
+        assertEquals(1, stats.getOverdue());
+    }
+
+    @Test
+    void archivedTaskReachableTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+        List<UUID> publicIds = taskRepository.createAll(List.of(
+                new Task(null, null, "reopened", "description", LocalDate.of(2020, 6, 5), 5, true, userId),
+                new Task(null, null, "deleted", "description", LocalDate.of(2020, 6, 6), 4, true, userId),
+                new Task(null, null, "bulk deleted", "description", LocalDate.of(2020, 6, 7), 3, true, userId)));
+        assertEquals(3, taskRepository.archiveCompleted(LocalDate.of(2021, 1, 1), 10).size());
+        UUID reopened = publicIds.get(0);
+        UUID deleted = publicIds.get(1);
+        UUID bulkDeleted = publicIds.get(2);
+
+        // read by public id and exported
+        assertEquals("reopened", taskRepository.findByPublicId(reopened).orElseThrow().getName());
+        assertEquals(Optional.of(0L), taskRepository.findVersion(reopened));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        taskRepository.copyOut(userId, TaskDataFormat.CSV, out);
+        assertEquals(4, out.toString(StandardCharsets.UTF_8).lines().count());
+
+        // completing again changes nothing, it stays archived
+        assertTrue(taskRepository.complete(reopened, "username").orElseThrow().getCompleted());
+        assertTrue(taskRepository.complete(reopened, "someone-else").isEmpty());
+        assertTrue(taskRepository.findSet(userId).isEmpty());
+        assertEquals(List.of(reopened), taskRepository.completeAll(userId, List.of(reopened)));
+
+        // a write at another version leaves it in the archive
+        TaskPatch patch = new TaskPatch();
+        patch.setCompleted(false);
+        assertTrue(taskRepository.patch(reopened, patch, 7L, "username").isEmpty());
+        assertTrue(taskRepository.findSet(userId).isEmpty());
+        // a write moves it back
+        Task patched = taskRepository.patch(reopened, patch, 0L, "username").orElseThrow();
+        assertFalse(patched.getCompleted());
+        assertEquals(List.of(reopened), taskRepository.findSet(userId).stream().map(Task::getPublicId).toList());
+
+        long version = userRepository.findTaskVersion(userId).orElseThrow();
+        assertTrue(taskRepository.delete(deleted, "someone-else").isEmpty());
+        assertEquals("deleted", taskRepository.delete(deleted, "username").orElseThrow().getName());
+        assertTrue(taskRepository.findByPublicId(deleted).isEmpty());
+        assertEquals(List.of(bulkDeleted), taskRepository.deleteAll(userId, List.of(bulkDeleted, deleted)));
+        // deletes from the archive change the listing with includeArchived, so they count as changes as well
+        assertEquals(Optional.of(version + 2), userRepository.findTaskVersion(userId));
+        assertEquals(1, taskRepository.findSetIncludingArchived(userId).size());
+        assertEquals(1, taskRepository.findStats(userId, LocalDate.of(2025, 1, 1)).getTotal());
+    }
+
+    @Test
+    void copyOutAndInTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+        User other = new User(null, "other", "pswd");
+        userRepository.create(other);
+        long otherId = userRepository.findByUsername(other.getUsername()).orElseThrow().getId();
+
+        taskRepository.create(new Task(null, null, "task1", "with, comma and \"quotes\"", LocalDate.of(2030, 6, 7), 5, false, userId));
+        taskRepository.create(new Task(null, null, "task2", null, LocalDate.of(2030, 6, 8), 2, true, userId));
+
+        for (TaskDataFormat format : TaskDataFormat.values()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            taskRepository.copyOut(userId, format, out);
+            String exported = out.toString(StandardCharsets.UTF_8);
+            assertEquals(format == TaskDataFormat.CSV ? 3 : 2, exported.lines().count());
+
+            long imported = taskRepository.copyIn(otherId, format, new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(2, imported);
+        }
+
+        // both imports went to the other user, with new public ids
+        List<Task> copies = taskRepository.findSet(otherId);
+        assertEquals(4, copies.size());
+        List<UUID> originals = taskRepository.findSet(userId).stream().map(Task::getPublicId).toList();
+        assertTrue(copies.stream().noneMatch(copy -> originals.contains(copy.getPublicId())));
+        Task copy = copies.stream().filter(task -> task.getName().equals("task1")).findFirst().orElseThrow();
+        assertEquals("with, comma and \"quotes\"", copy.getDescription());
+        assertEquals(LocalDate.of(2030, 6, 7), copy.getDeadline());
+        assertEquals(5, copy.getPriority());
+        assertEquals(4, taskRepository.findStats(otherId, LocalDate.of(2030, 1, 1)).getTotal());
+    }
+
+    @Test
+    void copyInInvalidTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+
+        String csv = "publicId,name,description,deadline,priority,complete\n,task1,,someday,1,false\n";
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                taskRepository.copyIn(userId, TaskDataFormat.CSV, new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))));
+        assertTrue(ex.getMessage().startsWith("Invalid task data:"));
+    }
+
+    @Test
+    void copyInIncompleteTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+
+        // a priority the column would accept as NULL, in the second row
+        String csv = "publicId,name,description,deadline,priority,complete\n,task1,,2030-06-07,1,false\n,task2,,2030-06-07,,false\n";
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                taskRepository.copyIn(userId, TaskDataFormat.CSV, new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))));
+        assertEquals("Invalid task data: name, deadline and priority are required (row 2).", ex.getMessage());
+
+        String json = "{\"name\":\"task1\",\"deadline\":\"2030-06-07\",\"priority\":1}\n{\"deadline\":\"2030-06-07\",\"priority\":1}\n";
+        ex = assertThrows(IllegalArgumentException.class, () ->
+                taskRepository.copyIn(userId, TaskDataFormat.JSON, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+        assertEquals("Invalid task data: name, deadline and priority are required (row 2).", ex.getMessage());
+        assertTrue(taskRepository.findSet(userId).isEmpty());
+
+        // past deadlines are accepted, an export of old tasks can be restored
+        String past = "publicId,name,description,deadline,priority,complete\n,task1,,2020-06-07,1,true\n";
+        assertEquals(1, taskRepository.copyIn(userId, TaskDataFormat.CSV, new ByteArrayInputStream(past.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    void findPageSummaryTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+
+        taskRepository.create(new Task(null, UUID.randomUUID(), "task1", "description", LocalDate.of(2020, 6, 7), 5, true, userId));
+
+        Task summary = taskRepository.findPage(userId, new TaskFilter(), null, 10, TaskView.SUMMARY).getTasks().get(0);
+        assertEquals("task1", summary.getName());
+        assertEquals(5, summary.getPriority());
+        assertNull(summary.getDescription());
+
+        List<Task> streamed = new ArrayList<>();
+        taskRepository.streamSet(userId, TaskView.SUMMARY, streamed::add);
+        assertEquals(1, streamed.size());
+        assertNull(streamed.get(0).getDescription());
+    }
+
     @Test
     void findByPublicIdTest() {
         User user = new User(null, "username", "pswd");
@@ -141,6 +538,270 @@ public class TaskRepositoryTest {
         assertTrue(noTask.isEmpty());
     }
 
+    @Test
+    void findVersionTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+
+        taskRepository.create(new Task(null, UUID.randomUUID(), "task", "description", LocalDate.of(2020, 6, 7), 5, true, userId));
+        UUID publicId = taskRepository.findSet(userId).getFirst().getPublicId();
+
+        // a new task starts at version 0, the insert trigger bumped the version of the task list
+        assertEquals(Optional.of(0L), taskRepository.findVersion(publicId));
+        assertEquals(Optional.of(1L), userRepository.findTaskVersion(userId));
+
+        taskRepository.complete(publicId, "username");
+        assertEquals(Optional.of(1L), taskRepository.findVersion(publicId));
+        assertEquals(Optional.of(2L), userRepository.findTaskVersion(userId));
+
+        // a statement that matches no row leaves both versions alone
+        taskRepository.complete(publicId, "someone-else");
+        assertEquals(Optional.of(1L), taskRepository.findVersion(publicId));
+        assertEquals(Optional.of(2L), userRepository.findTaskVersion(userId));
+
+        assertTrue(taskRepository.findVersion(UUID.randomUUID()).isEmpty());
+    }
+
+    @Test
+    void conditionalUpdateTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+        UUID publicId = taskRepository.createAll(List.of(
+                new Task(null, null, "task", "description", LocalDate.of(2030, 6, 7), 5, false, userId))).getFirst();
+
+        Task change = new Task(null, publicId, "renamed", "description", LocalDate.of(2030, 6, 7), 5, false, userId);
+        change.setVersion(0L);
+        Task updated = taskRepository.update(change, publicId, user.getUsername()).orElseThrow();
+        assertEquals(1L, updated.getVersion());
+
+        // a writer that still holds version 0 loses, the row stays as the first writer left it
+        change.setName("stale");
+        assertTrue(taskRepository.update(change, publicId, user.getUsername()).isEmpty());
+        TaskPatch patch = new TaskPatch();
+        patch.setPriority(1);
+        assertTrue(taskRepository.patch(publicId, patch, 0L, user.getUsername()).isEmpty());
+        assertEquals("renamed", taskRepository.findByPublicId(publicId).orElseThrow().getName());
+
+        assertEquals(2L, taskRepository.patch(publicId, patch, 1L, user.getUsername()).orElseThrow().getVersion());
+
+        assertTrue(taskRepository.existsForUser(publicId, user.getUsername()));
+        assertFalse(taskRepository.existsForUser(publicId, "someone-else"));
+
+        // what a patch is merged into, with the version its write is conditional on
+        assertEquals(2L, taskRepository.findForUser(publicId, user.getUsername()).orElseThrow().getVersion());
+        assertTrue(taskRepository.findForUser(publicId, "someone-else").isEmpty());
+    }
+
+    @Test
+    void searchTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+        User other = new User(null, "other", "pswd");
+        userRepository.create(other);
+        long otherId = userRepository.findByUsername(other.getUsername()).orElseThrow().getId();
+
+        taskRepository.create(new Task(null, UUID.randomUUID(), "buy milk", "from the corner shop", LocalDate.of(2030, 1, 1), 3, false, userId));
+        taskRepository.create(new Task(null, UUID.randomUUID(), "call bob", "ask him to buy milk", LocalDate.of(2030, 1, 2), 3, false, userId));
+        taskRepository.create(new Task(null, UUID.randomUUID(), "file taxes", "no groceries here", LocalDate.of(2030, 1, 3), 3, false, userId));
+        taskRepository.create(new Task(null, UUID.randomUUID(), "buy milk", "someone else", LocalDate.of(2030, 1, 1), 3, false, otherId));
+
+        // a match in the name outranks one in the description
+        TaskSearchPage first = taskRepository.search(userId, "milk", null, 1, TaskView.FULL);
+        assertEquals(1, first.getTasks().size());
+        assertTrue(first.hasNext());
+        assertEquals("buy milk", first.getTasks().getFirst().getName());
+
+        TaskSearchPage second = taskRepository.search(userId, "milk", first.getNext(), 1, TaskView.FULL);
+        assertEquals(1, second.getTasks().size());
+        assertFalse(second.hasNext());
+        assertEquals("call bob", second.getTasks().getFirst().getName());
+
+        assertTrue(taskRepository.search(userId, "dentist", null, 10, TaskView.FULL).getTasks().isEmpty());
+        assertEquals(1, taskRepository.search(otherId, "milk", null, 10, TaskView.FULL).getTasks().size());
+    }
+
+    @Test
+    void findStatsTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+        LocalDate today = LocalDate.of(2025, 1, 15);
+
+        taskRepository.create(new Task(null, UUID.randomUUID(), "done", "description", LocalDate.of(2025, 1, 1), 5, true, userId));
+        taskRepository.create(new Task(null, UUID.randomUUID(), "late", "description", LocalDate.of(2025, 1, 10), 2, false, userId));
+        taskRepository.create(new Task(null, UUID.randomUUID(), "open", "description", LocalDate.of(2025, 2, 1), 2, false, userId));
+        taskRepository.create(new Task(null, UUID.randomUUID(), "gone", "description", LocalDate.of(2025, 2, 1), 1, false, userId));
+
+        List<Task> tasks = taskRepository.findSet(userId);
+        Task open = tasks.stream().filter(task -> task.getName().equals("open")).findFirst().orElseThrow();
+        open.setCompleted(true);
+        open.setPriority(3);
+        taskRepository.update(open, open.getPublicId(), "username");
+        Task gone = tasks.stream().filter(task -> task.getName().equals("gone")).findFirst().orElseThrow();
+        taskRepository.delete(gone.getPublicId(), "username");
+
+        TaskStats stats = taskRepository.findStats(userId, today);
+        assertEquals(3, stats.getTotal());
+        assertEquals(2, stats.getCompleted());
+        assertEquals(1, stats.getOverdue());
+        assertEquals(0L, stats.getByPriority().get(1));
+        assertEquals(1L, stats.getByPriority().get(2));
+        assertEquals(1L, stats.getByPriority().get(3));
+        assertEquals(1L, stats.getByPriority().get(5));
+    }
+
+    @Test
+    void compactListChangesTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+        for (int i = 0; i < 3; i++) {
+            taskRepository.create(new Task(null, null, "task" + i, "description", LocalDate.of(2030, 6, 7), 1, false, userId));
+        }
+
+        assertTrue(taskRepository.compactListChanges(1000) >= 1);
+        // folded into one row without moving the version
+        assertEquals(1, jdbcClient.sql("SELECT COUNT(*) FROM task_list_changes WHERE user_id = ?").params(userId).query(Long.class).single());
+        assertEquals(Optional.of(3L), userRepository.findTaskVersion(userId));
+        assertEquals(3L, taskRepository.findSnapshot(userId, TaskView.FULL, false).getVersion().getVersion());
+    }
+
+    // runs the second write while the first one is written but not committed. the second one fails instead of
+    // queueing if the first holds a lock it needs
+    private void whileUncommitted(Runnable first, Runnable second) throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        CountDownLatch firstWritten = new CountDownLatch(1);
+        CountDownLatch secondWritten = new CountDownLatch(1);
+        ExecutorService writers = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> firstDone = writers.submit(() -> transaction.executeWithoutResult(status -> {
+                first.run();
+                firstWritten.countDown();
+                try {
+                    assertTrue(secondWritten.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }));
+            assertTrue(firstWritten.await(10, TimeUnit.SECONDS));
+            transaction.executeWithoutResult(status -> {
+                jdbcClient.sql("SET LOCAL lock_timeout = '2s'").update();
+                second.run();
+            });
+            secondWritten.countDown();
+            firstDone.get(10, TimeUnit.SECONDS);
+        } finally {
+            secondWritten.countDown();
+            writers.shutdownNow();
+        }
+    }
+
+    // not transactional, the writes run in two transactions of their own and clean up after themselves
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void concurrentWritesOfOneUserTest() throws Exception {
+        String username = "concurrent-" + UUID.randomUUID();
+        userRepository.create(new User(null, username, "pswd"));
+        long userId = userRepository.findByUsername(username).orElseThrow().getId();
+        try {
+            List<UUID> publicIds = taskRepository.createAll(List.of(
+                    new Task(null, null, "first", "description", LocalDate.of(2030, 6, 7), 1, false, userId),
+                    new Task(null, null, "second", "description", LocalDate.of(2030, 6, 7), 2, false, userId)));
+            long version = userRepository.findTaskVersion(userId).orElseThrow();
+
+            // completing moves both tasks between counters as well
+            whileUncommitted(
+                    () -> taskRepository.complete(publicIds.get(0), username).orElseThrow(),
+                    () -> {
+                        TaskPatch patch = new TaskPatch();
+                        patch.setName("second renamed");
+                        patch.setCompleted(true);
+                        taskRepository.patch(publicIds.get(1), patch, 0L, username).orElseThrow();
+                    });
+
+            assertEquals(Optional.of(version + 2), userRepository.findTaskVersion(userId));
+            assertEquals(2, taskRepository.findStats(userId, LocalDate.of(2025, 1, 1)).getCompleted());
+        } finally {
+            jdbcClient.sql("DELETE FROM users WHERE id = ?").params(userId).update();
+        }
+    }
+
+    // the archive job deletes from tasks and inserts into tasks_archive in one statement, both update counters
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void archiveAlongsideWritesOfTheUserTest() throws Exception {
+        String username = "concurrent-" + UUID.randomUUID();
+        userRepository.create(new User(null, username, "pswd"));
+        long userId = userRepository.findByUsername(username).orElseThrow().getId();
+        try {
+            List<UUID> publicIds = taskRepository.createAll(List.of(
+                    new Task(null, null, "open", "description", LocalDate.of(2030, 6, 7), 1, false, userId),
+                    new Task(null, null, "done", "description", LocalDate.of(2020, 6, 7), 1, true, userId)));
+            List<Task> archived = new ArrayList<>();
+
+            whileUncommitted(
+                    () -> taskRepository.complete(publicIds.get(0), username).orElseThrow(),
+                    () -> archived.addAll(taskRepository.archiveCompleted(LocalDate.of(2021, 1, 1), 10)));
+            // and a delete from the archive while the user creates a task
+            whileUncommitted(
+                    () -> taskRepository.delete(publicIds.get(1), username).orElseThrow(),
+                    () -> taskRepository.create(new Task(null, null, "new", "description", LocalDate.of(2030, 6, 7), 1, true, userId)));
+
+            assertTrue(archived.stream().anyMatch(task -> task.getPublicId().equals(publicIds.get(1))));
+            TaskStats stats = taskRepository.findStats(userId, LocalDate.of(2025, 1, 1));
+            assertEquals(2, stats.getTotal());
+            assertEquals(2, stats.getCompleted());
+            assertEquals(2L, stats.getByPriority().get(1));
+        } finally {
+            jdbcClient.sql("DELETE FROM users WHERE id = ?").params(userId).update();
+        }
+    }
+
+    @Test
+    void compactCountersTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+        List<UUID> publicIds = taskRepository.createAll(List.of(
+                new Task(null, null, "task1", "description", LocalDate.of(2030, 6, 7), 1, false, userId),
+                new Task(null, null, "task2", "description", LocalDate.of(2030, 6, 7), 2, false, userId)));
+        taskRepository.complete(publicIds.get(0), "username");
+        taskRepository.create(new Task(null, null, "task3", "description", LocalDate.of(2030, 6, 7), 2, false, userId));
+        taskRepository.delete(publicIds.get(1), "username");
+
+        assertTrue(taskRepository.compactCounters(1000) >= 1);
+        // one row per counter that is not 0: priority 1 completed and priority 2 open
+        assertEquals(2, jdbcClient.sql("SELECT COUNT(*) FROM task_counters WHERE user_id = ?").params(userId).query(Long.class).single());
+        TaskStats stats = taskRepository.findStats(userId, LocalDate.of(2025, 1, 1));
+        assertEquals(2, stats.getTotal());
+        assertEquals(1, stats.getCompleted());
+        assertEquals(1L, stats.getByPriority().get(1));
+        assertEquals(1L, stats.getByPriority().get(2));
+    }
+
+    @Test
+    void findStatsEmptyAccountTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+
+        // no counter rows at all before the first task
+        assertEquals(0L, jdbcClient.sql("SELECT COUNT(*) FROM task_counters WHERE user_id = ?").params(userId).query(Long.class).single());
+        TaskStats stats = taskRepository.findStats(userId, LocalDate.of(2025, 1, 15));
+        assertEquals(0, stats.getTotal());
+        assertEquals(0, stats.getCompleted());
+        assertEquals(0, stats.getOverdue());
+
+        // creating and deleting a task leaves counters that sum to zero, the stats stay empty without a recount
+        UUID publicId = UUID.randomUUID();
+        taskRepository.create(new Task(null, publicId, "task", "description", LocalDate.of(2025, 1, 1), 4, false, userId));
+        taskRepository.delete(publicId, user.getUsername());
+        assertEquals(0, taskRepository.findStats(userId, LocalDate.of(2025, 1, 15)).getTotal());
+    }
+
     @Test
     void updateTest() {
         User user = new User(null, "username", "pswd");
@@ -164,9 +825,15 @@ public class TaskRepositoryTest {
         // get task id to update specified row
         List<Task> p1Tasks = taskRepository.findSet(task.getUserId());
         assertFalse(p1Tasks.isEmpty());
-        int updateCount = taskRepository.update(taskUpdate, p1Tasks.getFirst().getPublicId());
-        // only one row should be updated
-        assertEquals(1, updateCount);
+        // another user can not update the task, it looks like it does not exist
+        User other = new User(null, "other", "pswd");
+        userRepository.create(other);
+        assertTrue(taskRepository.update(taskUpdate, p1Tasks.getFirst().getPublicId(), other.getUsername()).isEmpty());
+
+        Optional<Task> updated = taskRepository.update(taskUpdate, p1Tasks.getFirst().getPublicId(), user.getUsername());
+        // the updated row is returned
+        assertTrue(updated.isPresent());
+        assertEquals(taskUpdate.getName(), updated.get().getName());
 
         // get the updated item
         Optional<Task> newOptionalTask = taskRepository.findByPublicId(p1Tasks.getFirst().getPublicId());
@@ -186,6 +853,29 @@ public class TaskRepositoryTest {
 
     }
 
+    @Test
+    void patchTest() {
+        User user = new User(null, "username", "pswd");
+        userRepository.create(user);
+        long userId = userRepository.findByUsername(user.getUsername()).orElseThrow().getId();
+        UUID publicId = taskRepository.createAll(List.of(
+                new Task(null, null, "task", "description", LocalDate.of(2030, 6, 7), 5, false, userId))).getFirst();
+
+        TaskPatch patch = new TaskPatch();
+        patch.setDescription(null);
+        patch.setCompleted(true);
+
+        assertTrue(taskRepository.patch(publicId, patch, null, "someone-else").isEmpty());
+
+        Task patched = taskRepository.patch(publicId, patch, null, user.getUsername()).orElseThrow();
+        assertNull(patched.getDescription());
+        assertTrue(patched.getCompleted());
+        // untouched columns keep their values
+        assertEquals("task", patched.getName());
+        assertEquals(5, patched.getPriority());
+        assertEquals(LocalDate.of(2030, 6, 7), patched.getDeadline());
+    }
+
     @Test
     void deleteTest() {
         // create a user for foreign key constraint in table user_id and assert its existence
@@ -205,8 +895,10 @@ public class TaskRepositoryTest {
         assertFalse(p1Tasks.isEmpty());
         Task newTask = p1Tasks.getFirst();
 
-        int delCount = taskRepository.delete(newTask.getPublicId());
-        assertEquals(1, delCount);
+        assertTrue(taskRepository.delete(newTask.getPublicId(), "someone-else").isEmpty());
+        Optional<Task> deleted = taskRepository.delete(newTask.getPublicId(), user.getUsername());
+        assertTrue(deleted.isPresent());
+        assertEquals(newTask.getPublicId(), deleted.get().getPublicId());
 
         Optional<Task> delTask = taskRepository.findById(p1Tasks.getFirst().getId());
         assertTrue(delTask.isEmpty());
@@ -0,0 +1,61 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task.service;
+
+import com.example.todoapp.task.Task;
+import com.example.todoapp.task.repository.TaskRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TaskArchiverTest {
+
+    @Mock
+    private TaskRepository taskRepository;
+    @Mock
+    private TaskCache taskCache;
+
+    private static Task completed(long userId) {
+        return new Task(1L, UUID.randomUUID(), "task", "description", LocalDate.of(2020, 6, 7), 1, true, userId);
+    }
+
+    @Test
+    void archiveCompleted_RunsBatchesUntilOneIsNotFull() {
+        TaskArchiver archiver = new TaskArchiver(taskRepository, taskCache, true, Duration.ofDays(90), 2);
+        LocalDate before = LocalDate.of(2021, 1, 1);
+        Task first = completed(1L);
+        Task second = completed(2L);
+        Task third = completed(1L);
+        when(taskRepository.archiveCompleted(before, 2)).thenReturn(List.of(first, second), List.of(third));
+
+        assertEquals(3, archiver.archiveCompleted(before));
+
+        verify(taskRepository, times(2)).archiveCompleted(before, 2);
+        verify(taskCache, times(2)).evictUser(1L);
+        verify(taskCache).evictUser(2L);
+        verify(taskCache).evictTask(first.getPublicId());
+        verify(taskCache).evictTask(third.getPublicId());
+    }
+
+    @Test
+    void archiveCompleted_DisabledDoesNothing() {
+        TaskArchiver archiver = new TaskArchiver(taskRepository, taskCache, false, Duration.ofDays(90), 100);
+
+        archiver.archiveCompleted();
+
+        verifyNoInteractions(taskRepository, taskCache);
+    }
+}
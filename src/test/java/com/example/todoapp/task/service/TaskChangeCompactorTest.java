@@ -0,0 +1,39 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task.service;
+
+import com.example.todoapp.task.repository.TaskRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TaskChangeCompactorTest {
+
+    @Mock
+    private TaskRepository taskRepository;
+
+    @Test
+    void compactAll_RunsBatchesUntilOneIsNotFull() {
+        TaskChangeCompactor compactor = new TaskChangeCompactor(taskRepository, 2);
+        when(taskRepository.compactListChanges(2)).thenReturn(2, 1);
+        when(taskRepository.compactCounters(2)).thenReturn(0);
+
+        assertEquals(3, compactor.compactAll());
+
+        verify(taskRepository, times(2)).compactListChanges(2);
+        verify(taskRepository).compactCounters(2);
+    }
+
+    @Test
+    void compact_RejectsEmptyBatches() {
+        assertThrows(IllegalArgumentException.class, () -> new TaskChangeCompactor(taskRepository, 0));
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * SPDX-License-Identifier: MIT
+ * Copyright (c) 2025 Jon Breid
+ */
+
+package com.example.todoapp.task.service;
+
+import com.example.todoapp.task.Task;
+import com.example.todoapp.task.repository.TaskRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class TaskInsertBatcherTest {
+
+    private final TaskRepository taskRepository = mock(TaskRepository.class);
+    private final ExecutorService callers = Executors.newFixedThreadPool(8);
+    private TaskInsertBatcher batcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        callers.shutdownNow();
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    private static Task task(String name) {
+        return new Task(null, null, name, "description", LocalDate.now().plusDays(1), 3, false, 1L);
+    }
+
+    private static Task stored(Task task) {
+        return new Task(1L, UUID.randomUUID(), task.getName(), task.getDescription(), task.getDeadline(), task.getPriority(), task.getCompleted(), task.getUserId());
+    }
+
+    private List<Future<Task>> createConcurrently(List<Task> tasks) {
+        List<Future<Task>> results = new ArrayList<>();
+        for (Task task : tasks) {
+            results.add(callers.submit(() -> batcher.create(task)));
+        }
+        return results;
+    }
+
+    @Test
+    void disabledInsertsDirectly() {
+        batcher = new TaskInsertBatcher(taskRepository, false, 64, Duration.ofMillis(2), 4096, Duration.ofSeconds(10));
+        Task task = task("task");
+        when(taskRepository.create(task)).thenReturn(stored(task));
+
+        assertEquals("task", batcher.create(task).getName());
+        verify(taskRepository, never()).createAllRows(anyList());
+    }
+
+    @Test
+    void concurrentCreatesShareOneInsert() throws Exception {
+        // the window is long enough that only a full batch ends it
+        batcher = new TaskInsertBatcher(taskRepository, true, 8, Duration.ofSeconds(5), 4096, Duration.ofSeconds(10));
+        when(taskRepository.createAllRows(anyList())).thenAnswer(invocation ->
+                invocation.<List<Task>>getArgument(0).stream().map(TaskInsertBatcherTest::stored).toList());
+
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(task("task" + i));
+        }
+        List<Future<Task>> results = createConcurrently(tasks);
+
+        for (int i = 0; i < tasks.size(); i++) {
+            assertEquals("task" + i, results.get(i).get().getName());
+        }
+        verify(taskRepository, times(1)).createAllRows(argThat(batch -> batch.size() == 8));
+        verify(taskRepository, never()).create(any());
+    }
+
+    @Test
+    void loneCreateIsWrittenAfterTheWindow() {
+        batcher = new TaskInsertBatcher(taskRepository, true, 64, Duration.ofMillis(2), 4096, Duration.ofSeconds(10));
+        when(taskRepository.createAllRows(anyList())).thenAnswer(invocation ->
+                invocation.<List<Task>>getArgument(0).stream().map(TaskInsertBatcherTest::stored).toList());
+
+        assertEquals("task", batcher.create(task("task")).getName());
+    }
+
+    @Test
+    void failedBatchReportsErrorsPerCaller() throws Exception {
+        batcher = new TaskInsertBatcher(taskRepository, true, 3, Duration.ofSeconds(5), 4096, Duration.ofSeconds(10));
+        when(taskRepository.createAllRows(anyList())).thenThrow(new DataIntegrityViolationException("batch failed"));
+        when(taskRepository.create(any(Task.class))).thenAnswer(invocation -> {
+            Task task = invocation.getArgument(0);
+            if (task.getName().equals("bad")) {
+                throw new DataIntegrityViolationException("bad task");
+            }
+            return stored(task);
+        });
+
+        List<Future<Task>> results = createConcurrently(List.of(task("good1"), task("bad"), task("good2")));
+
+        assertEquals("good1", results.get(0).get().getName());
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> results.get(1).get());
+        assertInstanceOf(DataIntegrityViolationException.class, ex.getCause());
+        assertEquals("bad task", ex.getCause().getMessage());
+        assertEquals("good2", results.get(2).get().getName());
+    }
+
+    @Test
+    void errorInBatchFailsItsCallersOnly() {
+        batcher = new TaskInsertBatcher(taskRepository, true, 64, Duration.ofMillis(2), 4096, Duration.ofSeconds(10));
+        when(taskRepository.createAllRows(anyList()))
+                .thenThrow(new OutOfMemoryError("batch failed"))
+                .thenAnswer(invocation -> invocation.<List<Task>>getArgument(0).stream().map(TaskInsertBatcherTest::stored).toList());
+
+        assertThrows(OutOfMemoryError.class, () -> batcher.create(task("task1")));
+        // the flusher survived the error
+        assertEquals("task2", batcher.create(task("task2")).getName());
+    }
+
+    @Test
+    void closeLetsTheFlushInProgressFinish() throws Exception {
+        batcher = new TaskInsertBatcher(taskRepository, true, 64, Duration.ofMillis(2), 4096, Duration.ofSeconds(10));
+        CountDownLatch flushing = new CountDownLatch(1);
+        when(taskRepository.createAllRows(anyList())).thenAnswer(invocation -> {
+            flushing.countDown();
+            Thread.sleep(200);
+            // an interrupted flusher could not check out a connection
+            assertFalse(Thread.currentThread().isInterrupted());
+            return invocation.<List<Task>>getArgument(0).stream().map(TaskInsertBatcherTest::stored).toList();
+        });
+
+        Future<Task> result = createConcurrently(List.of(task("task"))).getFirst();
+        assertTrue(flushing.await(5, TimeUnit.SECONDS));
+        batcher.close();
+
+        assertEquals("task", result.get(5, TimeUnit.SECONDS).getName());
+        // creates after close are written directly
+        Task late = task("late");
+        when(taskRepository.create(late)).thenReturn(stored(late));
+        assertEquals("late", batcher.create(late).getName());
+    }
+
+    @Test
+    void callerWritesItselfWhenTheFlusherIsStuck() throws Exception {
+        batcher = new TaskInsertBatcher(taskRepository, true, 1, Duration.ofMillis(2), 4096, Duration.ofMillis(200));
+        CountDownLatch flushing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(taskRepository.createAllRows(anyList())).thenAnswer(invocation -> {
+            flushing.countDown();
+            release.await();
+            return invocation.<List<Task>>getArgument(0).stream().map(TaskInsertBatcherTest::stored).toList();
+        });
+        Task waiting = task("waiting");
+        when(taskRepository.create(waiting)).thenReturn(stored(waiting));
+
+        try {
+            Future<Task> stuck = createConcurrently(List.of(task("stuck"))).getFirst();
+            assertTrue(flushing.await(5, TimeUnit.SECONDS));
+
+            // taken by no one within the timeout, so written on the calling thread
+            assertEquals("waiting", batcher.create(waiting).getName());
+            verify(taskRepository).create(waiting);
+            // the stuck insert is in flight, its caller gets a timeout instead of waiting forever
+            ExecutionException ex = assertThrows(ExecutionException.class, stuck::get);
+            assertInstanceOf(QueryTimeoutException.class, ex.getCause());
+        } finally {
+            release.countDown();
+        }
+    }
+}
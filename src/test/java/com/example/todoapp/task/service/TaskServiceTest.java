@@ -6,6 +6,17 @@
 package com.example.todoapp.task.service;
 
 import com.example.todoapp.task.Task;
+import com.example.todoapp.task.TaskCursor;
+import com.example.todoapp.task.TaskDataFormat;
+import com.example.todoapp.task.TaskFilter;
+import com.example.todoapp.task.TaskPage;
+import com.example.todoapp.task.TaskPatch;
+import com.example.todoapp.task.TaskSearchPage;
+import com.example.todoapp.task.TaskSnapshot;
+import com.example.todoapp.task.TaskSort;
+import com.example.todoapp.task.TaskStats;
+import com.example.todoapp.task.TaskVersion;
+import com.example.todoapp.task.TaskView;
 import com.example.todoapp.task.repository.TaskRepository;
 import com.example.todoapp.user.service.UserService;
 import org.junit.jupiter.api.AfterEach;
@@ -14,17 +25,22 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -38,6 +54,13 @@ class TaskServiceTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private TaskInsertBatcher taskInsertBatcher;
+
+    // no revalidation window, every read of a cached entry checks its version
+    @Spy
+    private TaskCache taskCache = new TaskCache(1000, 1000, Duration.ofMinutes(1), Duration.ZERO);
+
     @InjectMocks
     private TaskService taskService;
 
@@ -73,9 +96,10 @@ class TaskServiceTest {
 
     @Test
     void createTask_success() {
+        when(taskInsertBatcher.create(task)).thenReturn(task);
 
-        assertDoesNotThrow(() -> taskService.createTask(task));
-        verify(taskRepository).create(task);
+        assertEquals(task, taskService.createTask(task));
+        verify(taskInsertBatcher).create(task);
     }
 
     @Test
@@ -86,7 +110,7 @@ class TaskServiceTest {
                 taskService.createTask(task));
 
         assertEquals("Priority outside priority levels.", ex.getMessage());
-        verify(taskRepository, never()).create(any());
+        verify(taskInsertBatcher, never()).create(any());
     }
 
     @Test
@@ -97,7 +121,7 @@ class TaskServiceTest {
                 taskService.createTask(task));
 
         assertEquals("Priority outside priority levels.", ex.getMessage());
-        verify(taskRepository, never()).create(any());
+        verify(taskInsertBatcher, never()).create(any());
     }
 
     @Test
@@ -108,7 +132,7 @@ class TaskServiceTest {
                 taskService.createTask(task));
 
         assertEquals("Deadline can not be in the past.", ex.getMessage());
-        verify(taskRepository, never()).create(any());
+        verify(taskInsertBatcher, never()).create(any());
     }
 
     @Test
@@ -119,7 +143,7 @@ class TaskServiceTest {
                 taskService.createTask(task));
 
         assertEquals("Task name to long. 80 characters max.", ex.getMessage());
-        verify(taskRepository, never()).create(any());
+        verify(taskInsertBatcher, never()).create(any());
     }
 
 
@@ -135,6 +159,8 @@ class TaskServiceTest {
         assertNotNull(result);
         assertEquals(task.getId(), result.getId());
         verify(taskRepository).findByPublicId(taskId);
+        // nothing cached yet, the task comes with its version
+        verify(taskRepository, never()).findVersion(taskId);
     }
 
     @Test
@@ -145,27 +171,24 @@ class TaskServiceTest {
 
         assertThrows(IllegalArgumentException.class, () ->
                 taskService.getTaskByPublicId(taskId));
-
-        verify(taskRepository).findByPublicId(taskId);
     }
 
     @Test
     void testUpdateTask_Success() {
-        Task existingTask = new Task();
-        existingTask.setPublicId(publicId);
-        existingTask.setUserId(userId);
-
-        when(taskRepository.findByPublicId(publicId)).thenReturn(Optional.of(existingTask));
-        when(userService.findUserNameByUserId(userId)).thenReturn(username);
+        when(taskRepository.update(task, publicId, username)).thenReturn(Optional.of(task));
 
         taskService.updateTask(task);
 
-        verify(taskRepository).update(task, publicId);
+        // the ownership check is part of the update, nothing is read up front
+        verify(taskRepository).update(task, publicId, username);
+        verify(taskRepository, never()).findByPublicId(any());
+        verify(userService, never()).findUserNameByUserId(anyLong());
+        verify(taskCache).evictTask(publicId);
     }
 
     @Test
     void testUpdateTask_TaskNotFound() {
-        when(taskRepository.findByPublicId(publicId)).thenReturn(Optional.empty());
+        when(taskRepository.update(task, publicId, username)).thenReturn(Optional.empty());
 
         IllegalArgumentException exception = assertThrows(
                 IllegalArgumentException.class,
@@ -175,10 +198,28 @@ class TaskServiceTest {
         assertEquals("Task not found.", exception.getMessage());
     }
 
+    @Test
+    void testUpdateTask_VersionConflict() {
+        task.setVersion(4L);
+        when(taskRepository.update(task, publicId, username)).thenReturn(Optional.empty());
+        when(taskRepository.existsForUser(publicId, username)).thenReturn(true);
+
+        assertThrows(TaskVersionConflictException.class, () -> taskService.updateTask(task));
+        verify(taskCache, never()).evictTask(any());
+    }
+
+    @Test
+    void testUpdateTask_UnversionedWriteDoesNotCheckForConflicts() {
+        when(taskRepository.update(task, publicId, username)).thenReturn(Optional.empty());
+
+        assertThrows(IllegalArgumentException.class, () -> taskService.updateTask(task));
+        verify(taskRepository, never()).existsForUser(any(), any());
+    }
+
     @Test
     void testUpdateTask_UnauthorizedUser() {
-        when(taskRepository.findByPublicId(publicId)).thenReturn(Optional.of(task));
-        when(userService.findUserNameByUserId(anyLong())).thenReturn("anotherUser");
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("anotherUser", null));
+        when(taskRepository.update(task, publicId, "anotherUser")).thenReturn(Optional.empty());
 
         IllegalArgumentException exception = assertThrows(
                 IllegalArgumentException.class,
@@ -193,12 +234,13 @@ class TaskServiceTest {
     public void deleteTask_UnauthorizedUser() {
         String unauthorizedUser = "unauthorizedUser";
 
-        when(userService.findUserNameByUserId(task.getUserId())).thenReturn(unauthorizedUser);
-        when(taskRepository.findByPublicId(task.getPublicId())).thenReturn(Optional.of(task));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(unauthorizedUser, null));
+        when(taskRepository.delete(task.getPublicId(), unauthorizedUser)).thenReturn(Optional.empty());
 
         assertThrows(IllegalArgumentException.class, () -> {
             taskService.deleteTask(task.getPublicId());
         });
+        verify(taskCache, never()).evictTask(any());
     }
 
     @Test
@@ -206,7 +248,7 @@ class TaskServiceTest {
 
         UUID nonExistentTaskId = UUID.randomUUID();
 
-       when(taskRepository.findByPublicId(nonExistentTaskId)).thenReturn(Optional.empty());
+       when(taskRepository.delete(nonExistentTaskId, username)).thenReturn(Optional.empty());
 
         assertThrows(IllegalArgumentException.class, () -> {
             taskService.deleteTask(nonExistentTaskId);
@@ -217,15 +259,14 @@ class TaskServiceTest {
     public void deleteTask_AuthorizedUser_Success() {
         String authorizedUser = username;
 
-        when(userService.findUserNameByUserId(task.getUserId())).thenReturn(authorizedUser);
-
-        when(taskRepository.findByPublicId(task.getPublicId())).thenReturn(Optional.of(task));
+        when(taskRepository.delete(task.getPublicId(), authorizedUser)).thenReturn(Optional.of(task));
 
         SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(authorizedUser, null));
 
         taskService.deleteTask(task.getPublicId());
 
-        verify(taskRepository).delete(task.getPublicId());
+        verify(taskRepository).delete(task.getPublicId(), authorizedUser);
+        verify(taskCache).evictUser(userId);
     }
 
     @Test
@@ -237,21 +278,427 @@ class TaskServiceTest {
                 new Task(1L, UUID.randomUUID(), "task2","description",  LocalDate.now(), 2, true, 1L)
         );
 
-        when(taskRepository.findSet(userId)).thenReturn(mockTasks);
-        List<Task> result = taskService.getTasksForUser(userId);
+        TaskVersion version = new TaskVersion(userId, 4L);
+        when(taskRepository.findSnapshot(userId, TaskView.FULL, false)).thenReturn(new TaskSnapshot(version, mockTasks));
+        TaskSnapshot result = taskService.getTasksForUser(version, TaskView.FULL, false);
 
-        assertEquals(2, result.size());
-        assertEquals("task1", result.getFirst().getName());
+        assertEquals(4L, result.getVersion().getVersion());
+        assertEquals(2, result.getTasks().size());
+        assertEquals("task1", result.getTasks().getFirst().getName());
     }
 
     @Test
     public void getTasksForUser_EmptyList() {
         Long userId = 2L;
 
-        when(taskRepository.findSet(userId)).thenReturn(Collections.emptyList());
-        List<Task> result = taskService.getTasksForUser(userId);
+        TaskVersion version = new TaskVersion(userId, 0L);
+        when(taskRepository.findSnapshot(userId, TaskView.FULL, false)).thenReturn(new TaskSnapshot(version, Collections.emptyList()));
+        TaskSnapshot result = taskService.getTasksForUser(version, TaskView.FULL, false);
+
+        assertTrue(result.getTasks().isEmpty());
+    }
+
+    @Test
+    public void getTaskPageForUser_Success() {
+        TaskPage page = new TaskPage(List.of(task), null);
+        TaskFilter filter = new TaskFilter();
+
+        when(taskRepository.findPage(userId, filter, null, 10, TaskView.FULL)).thenReturn(page);
+        TaskPage result = taskService.getTaskPageForUser(userId, filter, null, 10, TaskView.FULL);
+
+        assertSame(page, result);
+    }
+
+    @Test
+    public void getTaskPageForUser_Failure_InvalidLimit() {
+        TaskFilter filter = new TaskFilter();
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                taskService.getTaskPageForUser(userId, filter, null, 0, TaskView.FULL));
+
+        assertEquals("Page size must be between 1 and 200.", ex.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> taskService.getTaskPageForUser(userId, filter, null, 201, TaskView.FULL));
+        verify(taskRepository, never()).findPage(anyLong(), any(), any(), anyInt(), any());
+    }
+
+    @Test
+    public void getTaskPageForUser_Failure_CursorOfOtherSort() {
+        TaskFilter filter = new TaskFilter();
+        filter.setSort(TaskSort.NAME);
+        TaskCursor cursor = TaskCursor.after(task, TaskSort.DEADLINE);
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () ->
+                taskService.getTaskPageForUser(userId, filter, cursor, 10, TaskView.FULL));
+
+        assertEquals("Invalid cursor.", ex.getMessage());
+        verify(taskRepository, never()).findPage(anyLong(), any(), any(), anyInt(), any());
+    }
+
+    @Test
+    public void streamTasksForUser_Success() {
+        Consumer<Task> consumer = t -> {};
+
+        taskService.streamTasksForUser(userId, TaskView.FULL, consumer);
+
+        verify(taskRepository).streamSet(userId, TaskView.FULL, consumer);
+    }
+
+    @Test
+    public void importTasksForUser_EvictsUser() {
+        InputStream in = new ByteArrayInputStream(new byte[0]);
+        when(taskRepository.copyIn(userId, TaskDataFormat.CSV, in)).thenReturn(3L);
+
+        assertEquals(3L, taskService.importTasksForUser(userId, TaskDataFormat.CSV, in));
+
+        verify(taskCache).evictUser(userId);
+    }
+
+    @Test
+    public void patchTask_Success() {
+        TaskPatch patch = new TaskPatch();
+        patch.setName("renamed");
+        patch.setDescription(null);
+        task.setVersion(4L);
+        when(taskRepository.findForUser(publicId, username)).thenReturn(Optional.of(task));
+        when(taskRepository.patch(publicId, patch, 4L, username)).thenReturn(Optional.of(task));
+
+        assertEquals(task, taskService.patchTask(publicId, patch, null));
+
+        verify(taskCache).evictTask(publicId);
+        verify(taskCache).evictUser(userId);
+    }
+
+    @Test
+    public void patchTask_ValidatesPatchedFields() {
+        task.setVersion(0L);
+        when(taskRepository.findForUser(publicId, username)).thenReturn(Optional.of(task));
+        TaskPatch pastDeadline = new TaskPatch();
+        pastDeadline.setDeadline(LocalDate.now().minusDays(1));
+        assertEquals("Deadline can not be in the past.", assertThrows(IllegalArgumentException.class, () ->
+                taskService.patchTask(publicId, pastDeadline, null)).getMessage());
+
+        TaskPatch removedName = new TaskPatch();
+        removedName.setName(null);
+        assertEquals("Name, deadline, priority and completion can not be removed.", assertThrows(IllegalArgumentException.class, () ->
+                taskService.patchTask(publicId, removedName, null)).getMessage());
+
+        assertEquals("Nothing to update.", assertThrows(IllegalArgumentException.class, () ->
+                taskService.patchTask(publicId, new TaskPatch(), null)).getMessage());
+        verify(taskRepository, never()).patch(any(), any(), any(), any());
+    }
+
+    @Test
+    public void patchTask_ValidatesMergedTaskLikeUpdate() {
+        // the deadline passed since the task was written, a full update of it is rejected and so is any patch
+        task.setDeadline(LocalDate.now().minusDays(1));
+        task.setVersion(0L);
+        when(taskRepository.findForUser(publicId, username)).thenReturn(Optional.of(task));
+        TaskPatch description = new TaskPatch();
+        description.setDescription("only the description");
+
+        assertEquals("Deadline can not be in the past.", assertThrows(IllegalArgumentException.class, () ->
+                taskService.patchTask(publicId, description, null)).getMessage());
+        assertEquals("Deadline can not be in the past.", assertThrows(IllegalArgumentException.class, () ->
+                taskService.updateTask(description.applyTo(task))).getMessage());
+        verify(taskRepository, never()).patch(any(), any(), any(), any());
+
+        // moving the deadline is what makes it valid again
+        TaskPatch deadline = new TaskPatch();
+        deadline.setDeadline(LocalDate.now().plusDays(1));
+        when(taskRepository.patch(publicId, deadline, 0L, username)).thenReturn(Optional.of(deadline.applyTo(task)));
+        assertEquals(LocalDate.now().plusDays(1), taskService.patchTask(publicId, deadline, null).getDeadline());
+    }
+
+    @Test
+    public void patchTask_MergesAgainAfterConcurrentChange() {
+        TaskPatch patch = new TaskPatch();
+        patch.setPriority(4);
+        Task changed = new Task(task);
+        task.setVersion(0L);
+        changed.setVersion(1L);
+        when(taskRepository.findForUser(publicId, username)).thenReturn(Optional.of(task), Optional.of(changed));
+        when(taskRepository.patch(publicId, patch, 0L, username)).thenReturn(Optional.empty());
+        when(taskRepository.patch(publicId, patch, 1L, username)).thenReturn(Optional.of(patch.applyTo(changed)));
+
+        assertEquals(4, taskService.patchTask(publicId, patch, null).getPriority());
+    }
+
+    @Test
+    public void patchTask_TaskNotFound() {
+        TaskPatch patch = new TaskPatch();
+        patch.setPriority(4);
+        when(taskRepository.findForUser(publicId, username)).thenReturn(Optional.empty());
+
+        assertEquals("Task not found.", assertThrows(IllegalArgumentException.class, () ->
+                taskService.patchTask(publicId, patch, null)).getMessage());
+    }
+
+    @Test
+    public void patchTask_VersionConflict() {
+        TaskPatch patch = new TaskPatch();
+        patch.setPriority(4);
+        task.setVersion(3L);
+        when(taskRepository.findForUser(publicId, username)).thenReturn(Optional.of(task));
+
+        assertThrows(TaskVersionConflictException.class, () -> taskService.patchTask(publicId, patch, 2L));
+        verify(taskRepository, never()).patch(any(), any(), any(), any());
+    }
+
+    @Test
+    public void markTaskAsCompleted_Success() {
+        when(taskRepository.complete(publicId, username)).thenReturn(Optional.of(task));
+
+        taskService.markTaskAsCompleted(publicId);
+
+        verify(taskRepository).complete(publicId, username);
+        verify(taskCache).evictTask(publicId);
+    }
+
+    @Test
+    public void markTaskAsCompleted_TaskNotFound() {
+        when(taskRepository.complete(publicId, username)).thenReturn(Optional.empty());
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () ->
+                taskService.markTaskAsCompleted(publicId));
+
+        assertEquals("Task not found.", exception.getMessage());
+    }
+
+    @Test
+    public void createTasks_Success() {
+        List<Task> tasks = List.of(task, task);
+        List<UUID> publicIds = List.of(UUID.randomUUID(), UUID.randomUUID());
+        when(taskRepository.createAll(tasks)).thenReturn(publicIds);
+
+        assertEquals(publicIds, taskService.createTasks(tasks));
+
+        verify(taskInsertBatcher, never()).create(any());
+        verify(taskCache, times(1)).evictUser(userId);
+    }
+
+    @Test
+    public void createTasks_ReportsEveryInvalidItem() {
+        Task pastDeadline = new Task(null, null, "task", "description", LocalDate.now().minusDays(1), 3, false, userId);
+        Task noName = new Task(null, null, null, "description", LocalDate.now().plusDays(1), 3, false, userId);
+
+        TaskValidationException exception = assertThrows(TaskValidationException.class, () ->
+                taskService.createTasks(List.of(task, pastDeadline, noName)));
+
+        assertEquals(2, exception.getErrors().size());
+        assertEquals(1, exception.getErrors().get(0).getIndex());
+        assertEquals("Deadline can not be in the past.", exception.getErrors().get(0).getMessage());
+        assertEquals(2, exception.getErrors().get(1).getIndex());
+        assertEquals("Name, deadline and priority are required.", exception.getErrors().get(1).getMessage());
+        verify(taskRepository, never()).createAll(any());
+    }
+
+    @Test
+    public void createTasks_TooMany() {
+        assertThrows(IllegalArgumentException.class, () -> taskService.createTasks(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> taskService.createTasks(Collections.nCopies(1001, task)));
+    }
+
+    @Test
+    public void markTasksAsCompleted_Success() {
+        UUID other = UUID.randomUUID();
+        when(taskRepository.completeAll(userId, List.of(publicId, other))).thenReturn(List.of(publicId));
+
+        assertEquals(List.of(publicId), taskService.markTasksAsCompleted(userId, List.of(publicId, other)));
+
+        verify(taskCache, times(1)).evictUser(userId);
+        verify(taskCache).evictTask(publicId);
+        verify(taskRepository, never()).findByPublicId(any());
+    }
+
+    @Test
+    public void deleteTasks_NothingAffected() {
+        UUID other = UUID.randomUUID();
+        when(taskRepository.deleteAll(userId, List.of(other))).thenReturn(List.of());
+
+        assertEquals(List.of(), taskService.deleteTasks(userId, List.of(other)));
+
+        verify(taskCache, never()).evictUser(anyLong());
+    }
+
+    @Test
+    public void searchTasksForUser_Success() {
+        TaskSearchPage page = new TaskSearchPage(List.of(task), null);
+        when(taskRepository.search(userId, "milk", null, 10, TaskView.SUMMARY)).thenReturn(page);
+
+        TaskSearchPage result = taskService.searchTasksForUser(userId, "  milk ", null, 10, TaskView.SUMMARY);
+
+        assertEquals(page, result);
+    }
+
+    @Test
+    public void searchTasksForUser_InvalidQuery() {
+        Exception exception = assertThrows(IllegalArgumentException.class, () ->
+                taskService.searchTasksForUser(userId, " ", null, 10, TaskView.FULL));
+        assertEquals("Search query must not be empty.", exception.getMessage());
+
+        assertThrows(IllegalArgumentException.class, () ->
+                taskService.searchTasksForUser(userId, "a".repeat(201), null, 10, TaskView.FULL));
+        assertThrows(IllegalArgumentException.class, () ->
+                taskService.searchTasksForUser(userId, "milk", null, 0, TaskView.FULL));
+        verify(taskRepository, never()).search(anyLong(), any(), any(), anyInt(), any());
+    }
+
+    @Test
+    public void getStatsForUser_Success() {
+        TaskStats stats = new TaskStats();
+        stats.add(3, true, 2);
+        when(taskRepository.findStats(eq(userId), any(LocalDate.class))).thenReturn(stats);
+
+        TaskStats result = taskService.getStatsForUser(userId);
+
+        assertEquals(2, result.getTotal());
+        assertEquals(2, result.getCompleted());
+        verify(taskRepository).findStats(eq(userId), any(LocalDate.class));
+    }
+
+    @Test
+    public void getTaskListVersion_Success() {
+        when(userService.getTaskVersion(userId)).thenReturn(7L);
+
+        TaskVersion version = taskService.getTaskListVersion(userId);
+
+        assertEquals(userId, version.getUserId());
+        assertEquals(7L, version.getVersion());
+        assertEquals("\"1-7\"", version.toETag());
+    }
+
+    @Test
+    public void cachedEntriesServedWithinRevalidationWindow() {
+        TaskService windowed = new TaskService(taskRepository, userService,
+                new TaskCache(1000, 1000, Duration.ofMinutes(1), Duration.ofMinutes(1)), taskInsertBatcher);
+        task.setVersion(2L);
+        TaskVersion version = new TaskVersion(userId, 4L);
+        when(taskRepository.findByPublicId(publicId)).thenReturn(Optional.of(task));
+        when(userService.getTaskVersion(userId)).thenReturn(4L);
+        when(taskRepository.findSnapshot(userId, TaskView.FULL, false)).thenReturn(new TaskSnapshot(version, List.of(task)));
+
+        windowed.getTaskByPublicId(publicId);
+        windowed.getTasksForUser(windowed.getTaskListVersion(userId), TaskView.FULL, false);
+        assertEquals(2L, windowed.getTaskByPublicId(publicId).getVersion());
+        assertEquals(Optional.of(2L), windowed.getTaskVersion(publicId));
+        assertEquals(4L, windowed.getTaskListVersion(userId).getVersion());
+        windowed.getTasksForUser(windowed.getTaskListVersion(userId), TaskView.FULL, false);
+
+        // the entries were just read, nothing checks their version again before the window is over
+        verify(taskRepository, never()).findVersion(publicId);
+        verify(userService, times(1)).getTaskVersion(userId);
+        verify(taskRepository, times(1)).findByPublicId(publicId);
+        verify(taskRepository, times(1)).findSnapshot(userId, TaskView.FULL, false);
+    }
+
+    @Test
+    public void getTasksForUser_ServedFromCache() {
+        TaskVersion version = new TaskVersion(userId, 4L);
+        when(taskRepository.findSnapshot(userId, TaskView.FULL, false)).thenReturn(new TaskSnapshot(version, List.of(task)));
+
+        assertEquals("name", taskService.getTasksForUser(version, TaskView.FULL, false).getTasks().getFirst().getName());
+        assertEquals("name", taskService.getTasksForUser(version, TaskView.FULL, false).getTasks().getFirst().getName());
+
+        verify(taskRepository, times(1)).findSnapshot(userId, TaskView.FULL, false);
+        assertEquals(1, taskCache.userListStats().hitCount());
+    }
+
+    @Test
+    public void getTasksForUser_CallersGetCopies() {
+        TaskVersion version = new TaskVersion(userId, 4L);
+        when(taskRepository.findSnapshot(userId, TaskView.FULL, false)).thenReturn(new TaskSnapshot(version, List.of(task)));
+
+        taskService.getTasksForUser(version, TaskView.FULL, false).getTasks().getFirst().setName("changed by a caller");
+        task.setName("changed by the loader");
+
+        assertEquals("name", taskService.getTasksForUser(version, TaskView.FULL, false).getTasks().getFirst().getName());
+    }
+
+    @Test
+    public void getTasksForUser_ReloadedAtNewerVersion() {
+        // a write through another instance never evicted the entry here, the version still tells it apart
+        TaskVersion before = new TaskVersion(userId, 4L);
+        TaskVersion after = new TaskVersion(userId, 5L);
+        Task renamed = new Task(task);
+        renamed.setName("renamed");
+        when(taskRepository.findSnapshot(userId, TaskView.FULL, false))
+                .thenReturn(new TaskSnapshot(before, List.of(task)))
+                .thenReturn(new TaskSnapshot(after, List.of(renamed)));
+
+        taskService.getTasksForUser(before, TaskView.FULL, false);
+        TaskSnapshot result = taskService.getTasksForUser(after, TaskView.FULL, false);
+
+        assertEquals(5L, result.getVersion().getVersion());
+        assertEquals("renamed", result.getTasks().getFirst().getName());
+        verify(taskRepository, times(2)).findSnapshot(userId, TaskView.FULL, false);
+    }
+
+    @Test
+    public void getTasksForUser_IncludingArchivedNotCached() {
+        TaskVersion version = new TaskVersion(userId, 4L);
+        when(taskRepository.findSnapshot(userId, TaskView.FULL, true)).thenReturn(new TaskSnapshot(version, List.of(task)));
+
+        assertEquals(List.of(task), taskService.getTasksForUser(version, TaskView.FULL, true).getTasks());
+        assertEquals(List.of(task), taskService.getTasksForUser(version, TaskView.FULL, true).getTasks());
+
+        verify(taskRepository, times(2)).findSnapshot(userId, TaskView.FULL, true);
+        verify(taskRepository, never()).findSnapshot(userId, TaskView.FULL, false);
+    }
+
+    @Test
+    public void getTasksForUser_SummaryNotCached() {
+        TaskVersion version = new TaskVersion(userId, 4L);
+        when(taskRepository.findSnapshot(userId, TaskView.SUMMARY, false)).thenReturn(new TaskSnapshot(version, List.of(task)));
+
+        taskService.getTasksForUser(version, TaskView.SUMMARY, false);
+        taskService.getTasksForUser(version, TaskView.SUMMARY, false);
+
+        verify(taskRepository, times(2)).findSnapshot(userId, TaskView.SUMMARY, false);
+        verify(taskRepository, never()).findSnapshot(userId, TaskView.FULL, false);
+    }
+
+    @Test
+    public void getTasksForUser_EvictedOnCreate() {
+        TaskVersion version = new TaskVersion(userId, 4L);
+        when(taskRepository.findSnapshot(userId, TaskView.FULL, false)).thenReturn(new TaskSnapshot(version, List.of(task)));
+
+        taskService.getTasksForUser(version, TaskView.FULL, false);
+        taskService.createTask(task);
+        taskService.getTasksForUser(version, TaskView.FULL, false);
+
+        verify(taskRepository, times(2)).findSnapshot(userId, TaskView.FULL, false);
+    }
+
+    @Test
+    public void getTaskByPublicId_EvictedOnDelete() {
+        task.setVersion(0L);
+        when(taskRepository.findVersion(publicId)).thenReturn(Optional.of(0L));
+        when(taskRepository.findByPublicId(publicId)).thenReturn(Optional.of(task));
+        when(taskRepository.delete(publicId, username)).thenReturn(Optional.of(task));
+
+        taskService.getTaskByPublicId(publicId);
+        taskService.getTaskByPublicId(publicId);
+        taskService.deleteTask(publicId);
+        taskService.getTaskByPublicId(publicId);
+
+        // one lookup for the two cached reads and one after the delete evicted the entry
+        verify(taskRepository, times(2)).findByPublicId(publicId);
+        verify(taskCache).evictTask(publicId);
+        verify(taskCache).evictUser(userId);
+    }
+
+    @Test
+    public void getTaskByPublicId_ReloadedAtNewerVersion() {
+        task.setVersion(0L);
+        Task updated = new Task(task);
+        updated.setVersion(1L);
+        when(taskRepository.findVersion(publicId)).thenReturn(Optional.of(1L));
+        when(taskRepository.findByPublicId(publicId)).thenReturn(Optional.of(task)).thenReturn(Optional.of(updated));
+
+        taskService.getTaskByPublicId(publicId);
 
-        assertTrue(result.isEmpty());
+        assertEquals(1L, taskService.getTaskByPublicId(publicId).getVersion());
+        verify(taskRepository, times(2)).findByPublicId(publicId);
     }
 
 }
\ No newline at end of file
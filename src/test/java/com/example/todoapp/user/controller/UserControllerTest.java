@@ -10,7 +10,9 @@ package com.example.todoapp.user.controller;
 import com.example.todoapp.config.RestTestConfig;
 import com.example.todoapp.config.security.CustomUserDetailsService;
 import com.example.todoapp.config.security.JwtTokenUtil;
+import com.example.todoapp.config.security.PasswordHashingBusyException;
 import com.example.todoapp.config.security.SecurityConfig;
+import com.example.todoapp.config.security.VerifiedTokenCache;
 import com.example.todoapp.user.User;
 import com.example.todoapp.user.service.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -20,6 +22,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -59,6 +62,8 @@ public class UserControllerTest {
     private CustomUserDetailsService customUserDetailsService;
     @MockitoBean
     private JwtTokenUtil jwtTokenUtil;
+    @MockitoBean
+    private VerifiedTokenCache verifiedTokenCache;
 
     @MockitoBean
     private UserService userService;
@@ -119,6 +124,24 @@ public class UserControllerTest {
         verify(jwtTokenUtil, never()).generateToken(any());
     }
 
+    @Test
+    void loginTest_HashingSaturated() throws Exception {
+        UserDTO userDTO = new UserDTO();
+        userDTO.setUsername("testuser");
+        userDTO.setPassword("password");
+
+        when(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .thenThrow(new PasswordHashingBusyException());
+
+        mockMvc.perform(post("/api/users/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(userDTO)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+
+        verify(jwtTokenUtil, never()).generateToken(any());
+    }
+
     @Test
     void registerUser_Success() throws Exception {
         UserDTO userDTO = new UserDTO();
@@ -17,6 +17,7 @@ import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -114,6 +115,43 @@ public class UserRepositoryTest {
         assertTrue(noUser.isEmpty());
     }
 
+    @Test
+    void findUsernamesByIdsTest() {
+        userRepository.create(new User(null, "username1", "pswd"));
+        userRepository.create(new User(null, "username2", "pswd"));
+        long userId1 = userRepository.findByUsername("username1").orElseThrow().getId();
+        long userId2 = userRepository.findByUsername("username2").orElseThrow().getId();
+
+        Map<Long, String> usernames = userRepository.findUsernamesByIds(List.of(userId1, userId2, userId2 + 1000));
+
+        assertEquals(2, usernames.size());
+        assertEquals("username1", usernames.get(userId1));
+        assertEquals("username2", usernames.get(userId2));
+    }
+
+    @Test
+    void taskVersionTest() {
+        userRepository.create(new User(null, "username", "pswd"));
+        long userId = userRepository.findByUsername("username").orElseThrow().getId();
+
+        assertEquals(Optional.of(0L), userRepository.findTaskVersion(userId));
+
+        assertTrue(userRepository.findTaskVersion(userId + 1000).isEmpty());
+    }
+
+    @Test
+    void updatePasswordTest() {
+        User user = new User(null, "username", "oldHash");
+        userRepository.create(user);
+
+        assertEquals(0, userRepository.updatePassword("username", "otherHash", "newHash"));
+        assertEquals("oldHash", userRepository.findByUsername("username").orElseThrow().getPassword());
+
+        assertEquals(1, userRepository.updatePassword("username", "oldHash", "newHash"));
+        assertEquals("newHash", userRepository.findByUsername("username").orElseThrow().getPassword());
+        assertEquals("newHash", userRepository.findCredentials("username").orElseThrow().getPassword());
+        assertTrue(userRepository.findCredentials("notExisting").isEmpty());
+    }
 
     @Test
     void deleteTest() {
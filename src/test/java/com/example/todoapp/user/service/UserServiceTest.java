@@ -5,6 +5,8 @@
 
 package com.example.todoapp.user.service;
 
+import com.example.todoapp.config.security.CustomUserDetailsService;
+import com.example.todoapp.config.security.OffloadedPasswordEncoder;
 import com.example.todoapp.user.User;
 import com.example.todoapp.user.repository.UserRepository;
 import org.junit.jupiter.api.Test;
@@ -18,10 +20,11 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -32,7 +35,9 @@ public class UserServiceTest {
     @Mock
     private UserRepository userRepository;
     @Mock
-    private PasswordEncoder passwordEncoder;
+    private OffloadedPasswordEncoder passwordEncoder;
+    @Mock
+    private CustomUserDetailsService userDetailsService;
 
     @InjectMocks
     private UserService userService;
@@ -90,8 +95,8 @@ public class UserServiceTest {
         user.setPassword("hashedPassword");
 
         // mock existing user in database
-        when(userRepository.findByUsername("username")).thenReturn(Optional.of(user));
-        when(passwordEncoder.matches("password1234", user.getPassword())).thenReturn(true);
+        when(userRepository.findCredentials("username")).thenReturn(Optional.of(user));
+        when(passwordEncoder.matchesAndUpgrade("password1234", user.getPassword())).thenReturn(Optional.of("hashedPassword"));
 
         // execute
         User resultUser = userService.authenticate("username", "password1234");
@@ -99,6 +104,23 @@ public class UserServiceTest {
         // Assert
         assertNotNull(resultUser);
         assertEquals("username", resultUser.getUsername());
+        verify(userRepository, never()).updatePassword(any(), any(), any());
+    }
+
+    @Test
+    void authenticateTest_RehashesOutdatedHash() {
+        User user = new User();
+        user.setUsername("username");
+        user.setPassword("oldHash");
+
+        when(userRepository.findCredentials("username")).thenReturn(Optional.of(user));
+        when(passwordEncoder.matchesAndUpgrade("password1234", "oldHash")).thenReturn(Optional.of("newHash"));
+
+        User resultUser = userService.authenticate("username", "password1234");
+
+        verify(userRepository).updatePassword("username", "oldHash", "newHash");
+        verify(passwordEncoder, never()).encode(any());
+        assertEquals("newHash", resultUser.getPassword());
     }
 
     @Test
@@ -108,9 +130,9 @@ public class UserServiceTest {
         user.setPassword("hashedPassword");
 
         // mock user in database
-        when(userRepository.findByUsername("username")).thenReturn(Optional.of(user));
+        when(userRepository.findCredentials("username")).thenReturn(Optional.of(user));
         // mock false password
-        when(passwordEncoder.matches("wrongPassword", user.getPassword())).thenReturn(false);
+        when(passwordEncoder.matchesAndUpgrade("wrongPassword", user.getPassword())).thenReturn(Optional.empty());
 
         // execute + assert
         assertThrows(BadCredentialsException.class, () -> userService.authenticate(user.getUsername(), "wrongPassword"));
@@ -123,7 +145,7 @@ public class UserServiceTest {
         user.setPassword("hashedPassword");
 
         // mock no user found
-        when(userRepository.findByUsername("notExisting")).thenReturn(Optional.empty());
+        when(userRepository.findCredentials("notExisting")).thenReturn(Optional.empty());
 
         // execute + assert
         assertThrows(BadCredentialsException.class, () -> userService.authenticate(user.getUsername(), user.getPassword()));
@@ -187,6 +209,23 @@ public class UserServiceTest {
         assertThrows(IllegalArgumentException.class, () -> userService.findUserNameByUserId(user.getId()));
     }
 
+    @Test
+    void findUserNamesByUserIds_Success() {
+        when(userRepository.findUsernamesByIds(Set.of(1L, 2L))).thenReturn(Map.of(1L, "UserName1", 2L, "UserName2"));
+
+        Map<Long, String> names = userService.findUserNamesByUserIds(Set.of(1L, 2L));
+
+        assertEquals("UserName1", names.get(1L));
+        assertEquals("UserName2", names.get(2L));
+    }
+
+    @Test
+    void findUserNamesByUserIds_EmptyIds() {
+        Map<Long, String> names = userService.findUserNamesByUserIds(Set.of());
+
+        assertTrue(names.isEmpty());
+        verifyNoInteractions(userRepository);
+    }
 
     @Test
     void delteSelf_success() {
@@ -216,12 +255,13 @@ public class UserServiceTest {
         userStored.setPassword("hashedPassword");
         userStored.setId(1L);
 
-        when(userRepository.findByUsername(userIncoming.getUsername())).thenReturn(Optional.of(userStored));
+        when(userRepository.findCredentials(userIncoming.getUsername())).thenReturn(Optional.of(userStored));
         when(passwordEncoder.matches("rawPassword", "hashedPassword")).thenReturn(true);
 
         userService.deleteSelf(userIncoming);
 
         verify(userRepository).delete("UserName");
+        verify(userDetailsService).evict("UserName");
     }
 
     @Test
@@ -231,7 +271,7 @@ public class UserServiceTest {
         userIncoming.setPassword("rawPassword");
         userIncoming.setId(1L);
 
-        when(userRepository.findByUsername(userIncoming.getUsername())).thenReturn(Optional.empty());
+        when(userRepository.findCredentials(userIncoming.getUsername())).thenReturn(Optional.empty());
 
         assertThrows(BadCredentialsException.class, () -> userService.deleteSelf(userIncoming));
 
@@ -266,7 +306,7 @@ public class UserServiceTest {
         userStored.setPassword("hashedPassword");
         userStored.setId(1L);
 
-        when(userRepository.findByUsername(userIncoming.getUsername())).thenReturn(Optional.of(userStored));
+        when(userRepository.findCredentials(userIncoming.getUsername())).thenReturn(Optional.of(userStored));
         when(passwordEncoder.matches("rawPassword", "hashedPassword")).thenReturn(true);
 
         assertThrows(AccessDeniedException.class, () -> userService.deleteSelf(userIncoming));